@@ -0,0 +1,116 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one inspector refresh (capture on the target, apply to the viewer's window) with
+ * {@code sessions} sessions open on a MockBukkit server. Each invocation refreshes the next session
+ * in turn, so the score is per refresh and {@code -prof gc} reports bytes allocated per refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InspectorRefreshBenchmark {
+    private static final Material[] HOTBAR = {
+            Material.DIAMOND_SWORD, Material.SHIELD, Material.COBBLESTONE, Material.OAK_PLANKS,
+            Material.BREAD, Material.ENDER_PEARL
+    };
+
+    @Param({"1", "10", "100"})
+    int sessions;
+
+    private PlayerMock[] targets;
+    private InspectorView[] views;
+    private ItemStack[] alternates;
+    private int next;
+    private boolean flip;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ServerMock server = MockBukkit.mock();
+        targets = new PlayerMock[sessions];
+        views = new InspectorView[sessions];
+        for (int i = 0; i < sessions; i++) {
+            PlayerMock target = server.addPlayer("target" + i);
+            equip(target.getInventory());
+            targets[i] = target;
+            views[i] = new InspectorView(Bukkit.createInventory(null, InspectorView.SIZE, "bench"));
+            views[i].apply(InspectorView.Snapshot.capture(target, InspectorView.ALL));
+        }
+        alternates = new ItemStack[] {new ItemStack(Material.COBBLESTONE, 32), new ItemStack(Material.COBBLESTONE, 33)};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /** A spurious or no-op event: every section marked dirty, nothing actually changed. */
+    @Benchmark
+    public int unchangedAllSections() {
+        int i = advance();
+        return views[i].apply(InspectorView.Snapshot.capture(targets[i], InspectorView.ALL));
+    }
+
+    /** The common event: health and one storage slot changed. */
+    @Benchmark
+    public int changedHealthAndSlot() {
+        int i = advance();
+        PlayerMock target = targets[i];
+        flip = !flip;
+        target.setHealth(flip ? 19.0 : 20.0);
+        target.getInventory().setItem(2, alternates[flip ? 0 : 1]);
+        return views[i].apply(InspectorView.Snapshot.capture(target, InspectorView.HEALTH | InspectorView.STORAGE));
+    }
+
+    /** Block-to-block movement: only the location stat is captured and compared. */
+    @Benchmark
+    public int locationOnly() {
+        int i = advance();
+        return views[i].apply(InspectorView.Snapshot.capture(targets[i], InspectorView.LOCATION));
+    }
+
+    private int advance() {
+        int i = next;
+        next = i + 1 == sessions ? 0 : i + 1;
+        return i;
+    }
+
+    private static void equip(PlayerInventory inv) {
+        inv.setHelmet(new ItemStack(Material.DIAMOND_HELMET));
+        inv.setChestplate(new ItemStack(Material.DIAMOND_CHESTPLATE));
+        inv.setLeggings(new ItemStack(Material.DIAMOND_LEGGINGS));
+        inv.setBoots(new ItemStack(Material.DIAMOND_BOOTS));
+        inv.setItemInOffHand(new ItemStack(Material.SHIELD));
+        for (int slot = 0; slot < HOTBAR.length; slot++) {
+            inv.setItem(slot, new ItemStack(HOTBAR[slot], 16));
+        }
+        for (int slot = 9; slot < 36; slot += 3) {
+            inv.setItem(slot, new ItemStack(Material.COBBLESTONE, 64));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameMode;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling history of every online player's inspector state, so staff can look back at what a player
+ * carried before the window was opened.
+ *
+ * <p>Recording is event-driven: the same change events that refresh open windows mark a player
+ * here, and changed players get one frame per {@link #RECORD_TICKS}, captured on their own thread.
+ * Idle players record nothing. Each player keeps the last {@link #FRAMES} frames in a ring of
+ * primitive arrays: stats as {@code int}s and one {@link ItemInterner} id per item slot. Sections
+ * that did not change reuse the previous frame's ids. Memory per player is fixed, about 27 KB at
+ * 120 frames, plus one copy of each distinct stack shared by everyone.</p>
+ */
+final class InspectorHistory {
+    static final int FRAMES = 120;
+    static final int RECORD_TICKS = 20;
+
+    private static final int STAT_INTS = 13;
+    private static final int ITEM_INTS = InspectorView.ITEM_SLOTS.length;
+
+    private final InspectorStats stats;
+    private final ItemInterner items = new ItemInterner();
+    private final Map<UUID, Ring> rings = new ConcurrentHashMap<>();
+    /** Changed sections per player since their last frame. */
+    private final Map<UUID, Integer> pending = new ConcurrentHashMap<>();
+    private final List<String> worlds = new ArrayList<>();
+    /** Players between join and quit; only they may get a ring, so a frame that lands after quit is dropped. */
+    private final Set<UUID> tracked = ConcurrentHashMap.newKeySet();
+
+    InspectorHistory(InspectorStats stats) {
+        this.stats = stats;
+    }
+
+    void markChanged(UUID playerId, int sections) {
+        pending.merge(playerId, sections, (a, b) -> a | b);
+    }
+
+    /** Called every global tick; schedules a frame for each changed player once per interval. */
+    void tick(Plugin plugin, long tick) {
+        if (tick % RECORD_TICKS != 0) {
+            return;
+        }
+        for (UUID playerId : pending.keySet()) {
+            Integer sections = pending.remove(playerId);
+            Player player = Bukkit.getPlayer(playerId);
+            if (sections == null || player == null) {
+                continue;
+            }
+            player.getScheduler().run(plugin, task -> record(player, sections), null);
+        }
+    }
+
+    void track(UUID playerId) {
+        tracked.add(playerId);
+    }
+
+    /** Drops a player's history, releasing their interned stacks. */
+    void forget(UUID playerId) {
+        tracked.remove(playerId);
+        pending.remove(playerId);
+        Ring ring = rings.remove(playerId);
+        if (ring != null) {
+            ring.clear();
+        }
+    }
+
+    int players() {
+        return rings.size();
+    }
+
+    int internedStacks() {
+        return items.size();
+    }
+
+    /** The player's frames, or {@code null} when nothing was recorded for them. */
+    Ring ring(UUID playerId) {
+        return rings.get(playerId);
+    }
+
+    private void record(Player player, int sections) {
+        if (!player.isOnline()) {
+            return;
+        }
+        long started = System.nanoTime();
+        // Create under the map's key lock: forget() either sees the new ring or this sees the player untracked.
+        Ring ring = rings.compute(player.getUniqueId(), (id, r) -> r != null || !tracked.contains(id) ? r : new Ring());
+        if (ring == null) {
+            return;
+        }
+        ring.append(player, sections, System.currentTimeMillis());
+        stats.recordBackground(System.nanoTime() - started);
+    }
+
+    private int worldId(String name) {
+        synchronized (worlds) {
+            int id = worlds.indexOf(name);
+            if (id < 0) {
+                worlds.add(name);
+                id = worlds.size() - 1;
+            }
+            return id;
+        }
+    }
+
+    private String worldName(int id) {
+        synchronized (worlds) {
+            return worlds.get(id);
+        }
+    }
+
+    /** One recorded frame, rebuilt as a full {@link InspectorView.Snapshot}. */
+    record Frame(long seq, long timeMillis, int position, int count, InspectorView.Snapshot snapshot) {}
+
+    /** Fixed-size ring of one player's frames. Sequence numbers grow forever; the ring keeps the last {@link #FRAMES}. */
+    final class Ring {
+        private final long[] times = new long[FRAMES];
+        private final int[] statInts = new int[FRAMES * STAT_INTS];
+        private final int[] itemIds = new int[FRAMES * ITEM_INTS];
+        private long written;
+        /** Set by {@link #clear()}; a frame recorded after the ring was dropped must not re-acquire stacks. */
+        private boolean closed;
+
+        synchronized boolean isEmpty() {
+            return written == 0;
+        }
+
+        synchronized long newest() {
+            return written - 1;
+        }
+
+        synchronized long oldest() {
+            return Math.max(0, written - FRAMES);
+        }
+
+        /** The frame at {@code seq}, clamped to the frames still held; {@code null} when empty. */
+        synchronized Frame frame(long seq) {
+            if (written == 0) {
+                return null;
+            }
+            long oldest = Math.max(0, written - FRAMES);
+            long at = Math.max(oldest, Math.min(written - 1, seq));
+            int idx = (int) (at % FRAMES);
+
+            int s = idx * STAT_INTS;
+            InspectorView.Stats st = new InspectorView.Stats(
+                    Float.intBitsToFloat(statInts[s]),
+                    Float.intBitsToFloat(statInts[s + 1]),
+                    statInts[s + 2],
+                    Float.intBitsToFloat(statInts[s + 3]),
+                    Float.intBitsToFloat(statInts[s + 4]),
+                    statInts[s + 5],
+                    Float.intBitsToFloat(statInts[s + 6]),
+                    statInts[s + 7], statInts[s + 8], statInts[s + 9],
+                    worldName(statInts[s + 10]),
+                    Objects.requireNonNullElse(InspectorView.gameMode(statInts[s + 11]), GameMode.SURVIVAL),
+                    statInts[s + 12]);
+            ItemStack[] stacks = new ItemStack[InspectorView.SIZE];
+            int base = idx * ITEM_INTS;
+            for (int k = 0; k < ITEM_INTS; k++) {
+                stacks[InspectorView.ITEM_SLOTS[k]] = items.get(itemIds[base + k]);
+            }
+            return new Frame(at, times[idx], (int) (at - oldest) + 1, (int) (written - oldest),
+                    new InspectorView.Snapshot(InspectorView.ALL, st, stacks));
+        }
+
+        private synchronized void append(Player player, int sections, long now) {
+            if (closed) {
+                return;
+            }
+            int idx = (int) (written % FRAMES);
+            int prev = written == 0 ? -1 : (int) ((written - 1) % FRAMES);
+            if (prev < 0) {
+                sections = InspectorView.ALL;
+            }
+            int base = idx * ITEM_INTS;
+            if (written >= FRAMES) {
+                for (int k = 0; k < ITEM_INTS; k++) {
+                    items.release(itemIds[base + k]);
+                }
+            }
+
+            times[idx] = now;
+            InspectorView.Stats st = InspectorView.Stats.of(player);
+            int s = idx * STAT_INTS;
+            statInts[s] = Float.floatToRawIntBits((float) st.health());
+            statInts[s + 1] = Float.floatToRawIntBits((float) st.maxHealth());
+            statInts[s + 2] = st.food();
+            statInts[s + 3] = Float.floatToRawIntBits(st.saturation());
+            statInts[s + 4] = Float.floatToRawIntBits((float) st.armor());
+            statInts[s + 5] = st.level();
+            statInts[s + 6] = Float.floatToRawIntBits(st.exp());
+            statInts[s + 7] = st.blockX();
+            statInts[s + 8] = st.blockY();
+            statInts[s + 9] = st.blockZ();
+            statInts[s + 10] = worldId(st.world());
+            statInts[s + 11] = st.gameMode().ordinal();
+            statInts[s + 12] = st.effects();
+
+            ItemStack[] live = new ItemStack[InspectorView.SIZE];
+            InspectorView.readItems(player, sections, live);
+            int prevBase = prev * ITEM_INTS;
+            for (int k = 0; k < ITEM_INTS; k++) {
+                int slot = InspectorView.ITEM_SLOTS[k];
+                int id;
+                if ((sections & InspectorView.sectionOf(slot)) != 0) {
+                    id = items.acquire(live[slot]);
+                } else {
+                    id = itemIds[prevBase + k];
+                    items.retain(id);
+                }
+                itemIds[base + k] = id;
+            }
+            written++;
+        }
+
+        private synchronized void clear() {
+            int held = (int) Math.min(written, FRAMES);
+            for (int i = 0; i < held * ITEM_INTS; i++) {
+                items.release(itemIds[i]);
+            }
+            written = 0;
+            closed = true;
+        }
+    }
+}
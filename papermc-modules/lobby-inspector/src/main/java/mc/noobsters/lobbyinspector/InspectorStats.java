@@ -0,0 +1,72 @@
+package mc.noobsters.lobbyinspector;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of inspector work for {@code /lobbyinspector stats} and the JFR stats event.
+ * Recording is thread-safe; {@link #roll} runs once per second on the global tick.
+ */
+final class InspectorStats {
+    private static final double TICK_NANOS = 50_000_000.0;
+
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder slotsWritten = new LongAdder();
+    private final LongAdder workNanos = new LongAdder();
+
+    private long windowStartNanos = System.nanoTime();
+    private long windowTicks;
+    private volatile Window last = new Window(0, 0, 0, 0, 0);
+
+    void recordCapture(long nanos) {
+        captures.increment();
+        workNanos.add(nanos);
+    }
+
+    void recordApply(long nanos, int slots) {
+        refreshes.increment();
+        slotsWritten.add(slots);
+        workNanos.add(nanos);
+    }
+
+    /** History frames and remote feed updates. */
+    void recordBackground(long nanos) {
+        workNanos.add(nanos);
+    }
+
+    void onTick() {
+        windowTicks++;
+    }
+
+    /** Closes the current one-second window and returns it. */
+    Window roll() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - windowStartNanos) / 1e9);
+        long ticks = Math.max(1, windowTicks);
+        Window w = new Window(
+                captures.sumThenReset() / seconds,
+                refreshes.sumThenReset() / seconds,
+                slotsWritten.sumThenReset() / seconds,
+                workNanos.sumThenReset() / (double) ticks / 1e6,
+                ticks / seconds);
+        windowStartNanos = now;
+        windowTicks = 0;
+        last = w;
+        return w;
+    }
+
+    Window last() {
+        return last;
+    }
+
+    /**
+     * One second of inspector work. {@code millisPerTick} is summed over all threads, so on Folia
+     * it can exceed what any single region spent.
+     */
+    record Window(double capturesPerSecond, double refreshesPerSecond, double slotsPerSecond,
+                  double millisPerTick, double ticksPerSecond) {
+        double tickShare() {
+            return millisPerTick * 1e6 / TICK_NANOS;
+        }
+    }
+}
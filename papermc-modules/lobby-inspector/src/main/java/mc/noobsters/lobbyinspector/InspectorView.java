@@ -0,0 +1,350 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.ChatColor;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * The inspector window for one viewer plus what it last showed, so a refresh only writes slots
+ * whose content actually changed.
+ *
+ * <p>Item slots keep a private copy of the last written stack (the target's stacks are live
+ * mirrors), and stat slots keep the quantized key they were rendered from, so a stat only
+ * re-renders when its displayed text would change. A refresh only looks at the sections it is told
+ * are dirty.</p>
+ */
+final class InspectorView {
+    static final int SIZE = 54;
+
+    /** Dirty sections, see {@link Snapshot#capture(Player, int)}. */
+    static final int HEALTH = 1;
+    static final int FOOD = 1 << 1;
+    static final int XP = 1 << 2;
+    static final int LOCATION = 1 << 3;
+    static final int STATUS = 1 << 4;
+    static final int ARMOR = 1 << 5;
+    static final int HANDS = 1 << 6;
+    static final int STORAGE = 1 << 7;
+    static final int ALL = (1 << 8) - 1;
+    private static final int STATS = HEALTH | FOOD | XP | LOCATION | STATUS | ARMOR;
+
+    private static final int SLOT_HEALTH = 0;
+    private static final int SLOT_HUNGER = 1;
+    private static final int SLOT_ARMOR = 2;
+    private static final int SLOT_XP = 3;
+    private static final int SLOT_LOCATION = 4;
+    private static final int SLOT_STATUS = 5;
+    static final int SLOT_TIMELINE = 6;
+    static final int SLOT_OLDER = 7;
+    static final int SLOT_NEWER = 8;
+    private static final int SLOT_HELMET = 9;
+    private static final int SLOT_CHESTPLATE = 10;
+    private static final int SLOT_LEGGINGS = 11;
+    private static final int SLOT_BOOTS = 12;
+    private static final int SLOT_OFF_HAND = 13;
+    private static final int SLOT_MAIN_HAND = 14;
+    /** Storage slots 9..35 (main inventory) go to 18..44, hotbar 0..8 goes to 45..53. */
+    private static final int MAIN_OFFSET = 18 - 9;
+    private static final int HOTBAR_OFFSET = 45;
+    /** Every window slot that mirrors a target item: armor, hands, then storage. */
+    static final int[] ITEM_SLOTS = itemSlots();
+    private static final GameMode[] GAME_MODES = GameMode.values();
+    private static final int RENDERED_CACHE_SIZE = 512;
+
+    /**
+     * Rendered stat items by slot and rendered key, shared by all views (on Folia, across region
+     * threads). Most values (full health,
+     * full hunger, common armor totals, spawn positions) repeat across players and over time.
+     */
+    private static final Map<StatKey, ItemStack> RENDERED = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StatKey, ItemStack> eldest) {
+            return size() > RENDERED_CACHE_SIZE;
+        }
+    });
+
+    private final Inventory inventory;
+    private final ItemStack[] shown = new ItemStack[SIZE];
+    private final long[] statKeys = new long[SLOT_STATUS + 1];
+    private final String[] statExtras = new String[SLOT_STATUS + 1];
+    /** History frame being shown, or -1 while live. */
+    private volatile long pinned = -1;
+
+    InspectorView(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    Inventory inventory() {
+        return inventory;
+    }
+
+    boolean live() {
+        return pinned < 0;
+    }
+
+    long pinned() {
+        return pinned;
+    }
+
+    /** Shows a history frame; live snapshots are ignored until {@link #unpin()}. */
+    void pin(InspectorHistory.Frame frame, String label) {
+        pinned = frame.seq();
+        apply(frame.snapshot());
+        showTimeline(label);
+    }
+
+    void unpin() {
+        pinned = -1;
+        showTimeline("Live");
+    }
+
+    void showTimeline(String label) {
+        inventory.setItem(SLOT_TIMELINE, statItem(Material.BOOK, ChatColor.WHITE + "Timeline", label,
+                live() ? "Use the arrows to look back" : "Click to return to live"));
+        inventory.setItem(SLOT_OLDER, statItem(Material.ARROW, ChatColor.WHITE + "Older"));
+        inventory.setItem(SLOT_NEWER, statItem(Material.SPECTRAL_ARROW, ChatColor.WHITE + "Newer"));
+    }
+
+    /**
+     * Brings the window in line with {@code snapshot}. Runs on the viewer's thread. Returns the
+     * number of slots written.
+     */
+    int apply(Snapshot snapshot) {
+        int written = 0;
+        if (snapshot.stats() != null) {
+            written += refreshStats(snapshot.stats());
+        }
+        int sections = snapshot.sections();
+        ItemStack[] items = snapshot.items();
+        if ((sections & ARMOR) != 0) {
+            for (int slot = SLOT_HELMET; slot <= SLOT_BOOTS; slot++) {
+                written += writeItem(slot, items[slot]);
+            }
+        }
+        if ((sections & HANDS) != 0) {
+            written += writeItem(SLOT_OFF_HAND, items[SLOT_OFF_HAND]);
+            written += writeItem(SLOT_MAIN_HAND, items[SLOT_MAIN_HAND]);
+        }
+        if ((sections & STORAGE) != 0) {
+            for (int slot = MAIN_OFFSET + 9; slot < SIZE; slot++) {
+                written += writeItem(slot, items[slot]);
+            }
+        }
+        return written;
+    }
+
+    private int refreshStats(Stats now) {
+        int written = 0;
+        written += writeStat(SLOT_HEALTH, pack(tenths(now.health()), tenths(now.maxHealth())), null,
+                () -> statItem(Material.RED_DYE, ChatColor.RED + "Health",
+                        String.format("%.1f / %.1f", now.health(), now.maxHealth())));
+        written += writeStat(SLOT_HUNGER, pack(now.food(), tenths(now.saturation())), null,
+                () -> statItem(Material.COOKED_BEEF, ChatColor.GOLD + "Hunger",
+                        now.food() + " / 20",
+                        "Saturation: " + String.format("%.1f", now.saturation())));
+        written += writeStat(SLOT_ARMOR, tenths(now.armor()), null,
+                () -> statItem(Material.IRON_CHESTPLATE, ChatColor.AQUA + "Armor",
+                        String.format("%.1f", now.armor())));
+        written += writeStat(SLOT_XP, pack(now.level(), Math.round(now.exp() * 100)), null,
+                () -> statItem(Material.EXPERIENCE_BOTTLE, ChatColor.GREEN + "Experience",
+                        "Level: " + now.level(),
+                        "XP bar: " + String.format("%.2f", now.exp())));
+        written += writeStat(SLOT_LOCATION, blockKey(now.blockX(), now.blockY(), now.blockZ()), now.world(),
+                () -> statItem(Material.COMPASS, ChatColor.YELLOW + "Location",
+                        String.format("x=%d y=%d z=%d", now.blockX(), now.blockY(), now.blockZ()),
+                        "World: " + now.world()));
+        written += writeStat(SLOT_STATUS, pack(now.gameMode().ordinal(), now.effects()), null,
+                () -> statItem(Material.CLOCK, ChatColor.LIGHT_PURPLE + "Status",
+                        "Gamemode: " + now.gameMode().name(),
+                        "Effects: " + now.effects()));
+        return written;
+    }
+
+    /**
+     * Writes a stat slot when its rendered key changed. {@code key} (plus {@code extra}) must
+     * determine the rendered text exactly, so equal keys can share one cached stack.
+     */
+    private int writeStat(int slot, long key, String extra, Supplier<ItemStack> render) {
+        if (statKeys[slot] == key && Objects.equals(statExtras[slot], extra) && shown[slot] != null) {
+            return 0;
+        }
+        statKeys[slot] = key;
+        statExtras[slot] = extra;
+        ItemStack item = RENDERED.computeIfAbsent(new StatKey(slot, key, extra), k -> render.get());
+        shown[slot] = item;
+        // setItem copies the stack into the inventory, so the cached one stays untouched.
+        inventory.setItem(slot, item);
+        return 1;
+    }
+
+    private static int tenths(double value) {
+        return (int) Math.round(value * 10);
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /** Same layout as vanilla's packed block position. */
+    private static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private int writeItem(int slot, ItemStack current) {
+        ItemStack last = shown[slot];
+        if (current == null) {
+            if (last == null) {
+                return 0;
+            }
+            shown[slot] = null;
+            inventory.setItem(slot, null);
+            return 1;
+        }
+        if (current.equals(last)) {
+            return 0;
+        }
+        // Snapshot stacks are private copies that nothing mutates, so they can be kept as is.
+        shown[slot] = current;
+        inventory.setItem(slot, current);
+        return 1;
+    }
+
+    static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType() == Material.AIR;
+    }
+
+    /** Game mode with the given ordinal, or {@code null} when out of range. */
+    static GameMode gameMode(int ordinal) {
+        return ordinal >= 0 && ordinal < GAME_MODES.length ? GAME_MODES[ordinal] : null;
+    }
+
+    private static ItemStack copy(ItemStack item) {
+        return isEmpty(item) ? null : item.clone();
+    }
+
+    private static int[] itemSlots() {
+        int[] slots = new int[6 + 36];
+        int n = 0;
+        for (int slot = SLOT_HELMET; slot <= SLOT_MAIN_HAND; slot++) {
+            slots[n++] = slot;
+        }
+        for (int slot = MAIN_OFFSET + 9; slot < SIZE; slot++) {
+            slots[n++] = slot;
+        }
+        return slots;
+    }
+
+    private static ItemStack statItem(Material material, String name, String... lines) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            List<String> lore = new ArrayList<>();
+            for (String line : lines) {
+                lore.add(ChatColor.GRAY + line);
+            }
+            meta.setLore(lore);
+            meta.addItemFlags(ItemFlag.HIDE_ATTRIBUTES);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    private record StatKey(int slot, long key, String extra) {}
+
+    /**
+     * The {@code sections} of a target's state, captured on the target's thread. Items are private
+     * copies indexed by window slot ({@code null} when empty or not captured), so a snapshot can be
+     * applied to any number of views on other threads.
+     */
+    record Snapshot(int sections, Stats stats, ItemStack[] items) {
+        static Snapshot capture(Player target, int sections) {
+            Stats stats = (sections & STATS) != 0 ? Stats.of(target) : null;
+            ItemStack[] items = new ItemStack[SIZE];
+            readItems(target, sections, items);
+            for (int slot : ITEM_SLOTS) {
+                items[slot] = copy(items[slot]);
+            }
+            return new Snapshot(sections, stats, items);
+        }
+    }
+
+    /**
+     * Puts the target's live stacks for {@code sections} into {@code out} at their window slots.
+     * The stacks are mirrors of the target's inventory: copy them before handing them to another
+     * thread or keeping them.
+     */
+    static void readItems(Player target, int sections, ItemStack[] out) {
+        PlayerInventory inv = target.getInventory();
+        if ((sections & ARMOR) != 0) {
+            out[SLOT_HELMET] = inv.getHelmet();
+            out[SLOT_CHESTPLATE] = inv.getChestplate();
+            out[SLOT_LEGGINGS] = inv.getLeggings();
+            out[SLOT_BOOTS] = inv.getBoots();
+        }
+        if ((sections & HANDS) != 0) {
+            out[SLOT_OFF_HAND] = inv.getItemInOffHand();
+            out[SLOT_MAIN_HAND] = inv.getItemInMainHand();
+        }
+        if ((sections & STORAGE) != 0) {
+            ItemStack[] storage = inv.getStorageContents();
+            for (int i = 9; i < 36 && i < storage.length; i++) {
+                out[MAIN_OFFSET + i] = storage[i];
+            }
+            for (int i = 0; i < 9 && i < storage.length; i++) {
+                out[HOTBAR_OFFSET + i] = storage[i];
+            }
+        }
+    }
+
+    /** The section an item slot from {@link #ITEM_SLOTS} belongs to. */
+    static int sectionOf(int slot) {
+        if (slot <= SLOT_BOOTS) {
+            return ARMOR;
+        }
+        return slot <= SLOT_MAIN_HAND ? HANDS : STORAGE;
+    }
+
+    /** The values the stat slots are rendered from. */
+    record Stats(double health, double maxHealth, int food, float saturation, double armor,
+                 int level, float exp, int blockX, int blockY, int blockZ, String world,
+                 GameMode gameMode, int effects) {
+        static Stats of(Player target) {
+            Location loc = target.getLocation();
+            return new Stats(
+                    target.getHealth(),
+                    attributeOr(target, Attribute.MAX_HEALTH, 20.0),
+                    target.getFoodLevel(),
+                    target.getSaturation(),
+                    attributeOr(target, Attribute.ARMOR, 0.0),
+                    target.getLevel(),
+                    target.getExp(),
+                    loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(),
+                    target.getWorld().getName(),
+                    target.getGameMode(),
+                    target.getActivePotionEffects().size());
+        }
+
+        private static double attributeOr(Player player, Attribute attribute, double def) {
+            AttributeInstance instance = player.getAttribute(attribute);
+            return instance == null ? def : instance.getValue();
+        }
+    }
+}
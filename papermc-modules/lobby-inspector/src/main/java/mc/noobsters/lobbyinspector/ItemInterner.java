@@ -0,0 +1,73 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reference-counted table of distinct item stacks, so history frames store an {@code int} per slot
+ * and a stack held by many players or kept across many frames is stored once. Id {@code 0} is the
+ * empty slot. Ids whose count drops to zero are reused.
+ *
+ * <p>Interned stacks are private copies and must not be mutated. All methods are synchronized, since
+ * frames are recorded on each target's own thread.</p>
+ */
+final class ItemInterner {
+    private final Map<ItemStack, Integer> ids = new HashMap<>();
+    private ItemStack[] stacks = new ItemStack[256];
+    private int[] refs = new int[256];
+    private int[] free = new int[16];
+    private int freeCount;
+    private int next = 1;
+
+    /** Returns the id of {@code live}, copying it on first sight, and takes one reference. */
+    synchronized int acquire(ItemStack live) {
+        if (InspectorView.isEmpty(live)) {
+            return 0;
+        }
+        Integer known = ids.get(live);
+        if (known != null) {
+            refs[known]++;
+            return known;
+        }
+        int id = freeCount > 0 ? free[--freeCount] : next++;
+        if (id == stacks.length) {
+            stacks = Arrays.copyOf(stacks, id * 2);
+            refs = Arrays.copyOf(refs, id * 2);
+        }
+        ItemStack copy = live.clone();
+        stacks[id] = copy;
+        refs[id] = 1;
+        ids.put(copy, id);
+        return id;
+    }
+
+    synchronized void retain(int id) {
+        if (id != 0) {
+            refs[id]++;
+        }
+    }
+
+    synchronized void release(int id) {
+        if (id == 0 || --refs[id] > 0) {
+            return;
+        }
+        ids.remove(stacks[id]);
+        stacks[id] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = id;
+    }
+
+    synchronized ItemStack get(int id) {
+        return id == 0 ? null : stacks[id];
+    }
+
+    /** Distinct stacks currently held. */
+    synchronized int size() {
+        return ids.size();
+    }
+}
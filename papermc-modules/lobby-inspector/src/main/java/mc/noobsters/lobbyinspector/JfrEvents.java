@@ -0,0 +1,74 @@
+package mc.noobsters.lobbyinspector;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events emitted by LobbyInspector.
+ *
+ * <p>Call sites follow the usual {@code begin()/end()/shouldCommit()} pattern and only fill in
+ * string fields after {@code shouldCommit()} returns true, so a disabled event costs a timestamp read.</p>
+ */
+final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    @Name("mc.noobsters.lobbyinspector.Capture")
+    @Label("Inspector Capture")
+    @Category({"LobbyInspector"})
+    @Description("Snapshot of one inspected player's dirty sections, on the player's thread")
+    @StackTrace(false)
+    static final class Capture extends Event {
+        @Label("Target")
+        String target;
+
+        @Label("Sections")
+        @Description("Bit mask of InspectorView sections")
+        int sections;
+
+        @Label("Viewers")
+        int viewers;
+    }
+
+    @Name("mc.noobsters.lobbyinspector.Apply")
+    @Label("Inspector Apply")
+    @Category({"LobbyInspector"})
+    @Description("One snapshot written into one viewer's window, on the viewer's thread")
+    @StackTrace(false)
+    static final class Apply extends Event {
+        @Label("Slots Written")
+        int slotsWritten;
+    }
+
+    @Name("mc.noobsters.lobbyinspector.Stats")
+    @Label("Inspector Stats")
+    @Category({"LobbyInspector"})
+    @Description("Inspector totals over the last second")
+    @StackTrace(false)
+    static final class Stats extends Event {
+        @Label("Sessions")
+        int sessions;
+
+        @Label("Targets")
+        int targets;
+
+        @Label("Refreshes Per Second")
+        double refreshesPerSecond;
+
+        @Label("Slots Written Per Second")
+        double slotsPerSecond;
+
+        @Label("Tick Share")
+        @Percentage
+        @Description("Inspector work as a share of one 50 ms tick budget")
+        double tickShare;
+
+        @Label("Interval Ticks")
+        int intervalTicks;
+    }
+}
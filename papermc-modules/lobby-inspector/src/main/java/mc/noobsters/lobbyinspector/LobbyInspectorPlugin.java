@@ -1,11 +1,12 @@
 package mc.noobsters.lobbyinspector;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.GameMode;
-import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.attribute.Attribute;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -14,41 +15,67 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
-import org.bukkit.inventory.ItemFlag;
-import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.PlayerInventory;
-import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.potion.PotionEffect;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public final class LobbyInspectorPlugin extends JavaPlugin implements Listener {
     private static final String PERM_USE = "lobbyinspector.use";
     private static final String TITLE_PREFIX = ChatColor.DARK_AQUA + "Inspect: ";
-    private static final int UPDATE_TICKS = 10;
 
-    private final Map<UUID, Session> sessions = new HashMap<>();
+    /** Views of each inspected player, by viewer. */
+    private final Map<UUID, Watch> watches = new ConcurrentHashMap<>();
+    /** Viewer to the player they inspect. */
+    private final Map<UUID, UUID> viewing = new ConcurrentHashMap<>();
+    /** Dirty sections per inspected player, drained by the tick. */
+    private final Map<UUID, Integer> dirty = new ConcurrentHashMap<>();
+    /** Dirty targets in the order they became dirty; one entry per key of {@link #dirty}. */
+    private final Queue<UUID> dirtyOrder = new ConcurrentLinkedQueue<>();
+    private final RefreshPacer pacer = new RefreshPacer();
+    private final InspectorStats stats = new InspectorStats();
+    private final InspectorHistory history = new InspectorHistory(stats);
+    private final RemoteInspect remote = new RemoteInspect(this);
+    private ScheduledTask ticker;
+    private long ticks;
 
     @Override
     public void onEnable() {
         Bukkit.getPluginManager().registerEvents(this, this);
+        Bukkit.getPluginManager().registerEvents(new TargetChangeListener(this), this);
+        remote.register();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            history.track(player.getUniqueId());
+        }
+        PluginCommand inspect = getCommand("inspect");
+        if (inspect != null) {
+            inspect.setExecutor(this::onInspectCommand);
+        }
+        PluginCommand admin = getCommand("lobbyinspector");
+        if (admin != null) {
+            admin.setExecutor(this::onAdminCommand);
+        }
+        ticker = Bukkit.getGlobalRegionScheduler().runAtFixedRate(this, task -> tick(), 1L, 1L);
         getLogger().info("LobbyInspector enabled");
     }
 
     @Override
     public void onDisable() {
-        for (Session s : sessions.values()) {
-            Bukkit.getScheduler().cancelTask(s.taskId());
+        if (ticker != null) {
+            ticker.cancel();
         }
-        sessions.clear();
+        remote.unregister();
+        watches.clear();
+        viewing.clear();
+        dirty.clear();
+        dirtyOrder.clear();
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -75,19 +102,70 @@ public final class LobbyInspectorPlugin extends JavaPlugin implements Listener {
         openInspect(viewer, target);
     }
 
+    /** {@code /inspect <player>}: opens a local window, or a remote one when the player is on another lobby. */
+    private boolean onInspectCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!(sender instanceof Player viewer)) {
+            sender.sendMessage(ChatColor.RED + "Only players can inspect.");
+            return true;
+        }
+        if (args.length != 1) {
+            return false;
+        }
+        if (viewer.getName().equalsIgnoreCase(args[0])) {
+            viewer.sendMessage(ChatColor.RED + "You cannot inspect yourself.");
+            return true;
+        }
+        Player target = Bukkit.getPlayerExact(args[0]);
+        if (target != null) {
+            openInspect(viewer, target);
+        } else {
+            stopViewing(viewer.getUniqueId());
+            remote.subscribe(viewer, args[0]);
+        }
+        return true;
+    }
+
+    /** {@code /lobbyinspector stats}: inspector cost over the last second. */
+    private boolean onAdminCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length != 1 || !args[0].equalsIgnoreCase("stats")) {
+            return false;
+        }
+        InspectorStats.Window w = stats.last();
+        sender.sendMessage(ChatColor.DARK_AQUA + "LobbyInspector, last second:");
+        sender.sendMessage(ChatColor.GRAY + String.format("Sessions: %d viewers on %d targets, %d remote viewers, %d remote feeds",
+                viewing.size(), watches.size(), remote.sessionCount(), remote.feedCount()));
+        sender.sendMessage(ChatColor.GRAY + String.format("Refreshes: %.1f/s from %.1f captures/s, %.1f slots written/s",
+                w.refreshesPerSecond(), w.capturesPerSecond(), w.slotsPerSecond()));
+        sender.sendMessage(ChatColor.GRAY + String.format("Cost: %.3f ms/tick (%.2f%% of a 50 ms tick) at %.1f TPS",
+                w.millisPerTick(), w.tickShare() * 100, w.ticksPerSecond()));
+        sender.sendMessage(ChatColor.GRAY + String.format("Pacing: %d tick interval, up to %s targets/tick, %d queued",
+                pacer.interval(), pacer.targetsPerTick() == Integer.MAX_VALUE ? "unlimited" : String.valueOf(pacer.targetsPerTick()),
+                dirty.size()));
+        sender.sendMessage(ChatColor.GRAY + String.format("History: %d players, %d distinct stacks",
+                history.players(), history.internedStacks()));
+        return true;
+    }
+
+    InspectorStats stats() {
+        return stats;
+    }
+
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
         if (!(event.getWhoClicked() instanceof Player viewer)) {
             return;
         }
-        Session session = sessions.get(viewer.getUniqueId());
-        if (session == null) {
+        if (!viewing.containsKey(viewer.getUniqueId())) {
             return;
         }
         if (!(event.getView().getTopInventory().getHolder() instanceof InspectorHolder)) {
             return;
         }
         event.setCancelled(true);
+        int slot = event.getRawSlot();
+        if (slot == InspectorView.SLOT_TIMELINE || slot == InspectorView.SLOT_OLDER || slot == InspectorView.SLOT_NEWER) {
+            navigate(viewer, slot);
+        }
     }
 
     @EventHandler
@@ -95,150 +173,249 @@ public final class LobbyInspectorPlugin extends JavaPlugin implements Listener {
         if (!(event.getPlayer() instanceof Player viewer)) {
             return;
         }
-        Session session = sessions.get(viewer.getUniqueId());
-        if (session == null) {
-            return;
-        }
-        if (!(event.getInventory().getHolder() instanceof InspectorHolder)) {
+        InspectorView view = viewOf(viewer.getUniqueId());
+        // Opening another target's view closes this one after the new session is registered.
+        if (view == null || event.getInventory() != view.inventory()) {
             return;
         }
-        stopSession(viewer.getUniqueId());
+        stopViewing(viewer.getUniqueId());
     }
 
     @EventHandler
-    public void onQuit(PlayerQuitEvent event) {
-        stopSession(event.getPlayer().getUniqueId());
+    public void onJoin(PlayerJoinEvent event) {
+        history.track(event.getPlayer().getUniqueId());
     }
 
-    private void openInspect(Player viewer, Player target) {
-        stopSession(viewer.getUniqueId());
-
-        Inventory inv = Bukkit.createInventory(new InspectorHolder(), 54, TITLE_PREFIX + target.getName());
-        Session session = new Session(target.getUniqueId(), inv, -1);
-        sessions.put(viewer.getUniqueId(), session);
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        UUID quitting = event.getPlayer().getUniqueId();
+        stopViewing(quitting);
+        history.forget(quitting);
+        Watch watch = watches.remove(quitting);
+        if (watch == null) {
+            return;
+        }
+        dirty.remove(quitting);
+        for (UUID viewerId : watch.viewers.keySet()) {
+            viewing.remove(viewerId, quitting);
+            Player viewer = Bukkit.getPlayer(viewerId);
+            if (viewer != null) {
+                viewer.getScheduler().run(this, task -> {
+                    viewer.closeInventory();
+                    viewer.sendMessage(ChatColor.YELLOW + "Target went offline.");
+                }, null);
+            }
+        }
+    }
 
-        int taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> tickSession(viewer.getUniqueId()), 0L, UPDATE_TICKS);
-        sessions.put(viewer.getUniqueId(), new Session(target.getUniqueId(), inv, taskId));
+    /**
+     * Records that {@code sections} of {@code targetId} changed. Called from whichever thread owns
+     * the target; changes are merged until the target's next refresh.
+     */
+    void markDirty(UUID targetId, int sections) {
+        history.markChanged(targetId, sections);
+        remote.markChanged(targetId, sections);
+        if (!watches.containsKey(targetId)) {
+            return;
+        }
+        // Enqueue inside compute: tick() may remove the entry at any moment, and a re-inserted
+        // entry without a queue slot would never be refreshed again.
+        dirty.compute(targetId, (id, pending) -> {
+            if (pending == null) {
+                dirtyOrder.add(id);
+                return sections;
+            }
+            return pending | sections;
+        });
+    }
 
+    private void openInspect(Player viewer, Player target) {
+        UUID viewerId = viewer.getUniqueId();
+        stopViewing(viewerId);
+
+        Inventory inv = Bukkit.createInventory(new InspectorHolder(), InspectorView.SIZE, TITLE_PREFIX + target.getName());
+        InspectorView view = new InspectorView(inv);
+        watches.compute(target.getUniqueId(), (id, watch) -> {
+            Watch w = watch != null ? watch : new Watch();
+            w.viewers.put(viewerId, view);
+            return w;
+        });
+        viewing.put(viewerId, target.getUniqueId());
+
+        view.showTimeline("Live");
         viewer.openInventory(inv);
+        markDirty(target.getUniqueId(), InspectorView.ALL);
     }
 
-    private void tickSession(UUID viewerId) {
-        Session session = sessions.get(viewerId);
-        if (session == null) {
+    /** Steps the viewer's window through the target's history. Runs on the viewer's thread. */
+    private void navigate(Player viewer, int slot) {
+        UUID targetId = viewing.get(viewer.getUniqueId());
+        InspectorView view = viewOf(viewer.getUniqueId());
+        if (targetId == null || view == null) {
             return;
         }
-
-        Player viewer = Bukkit.getPlayer(viewerId);
-        if (viewer == null || !viewer.isOnline()) {
-            stopSession(viewerId);
+        if (slot == InspectorView.SLOT_TIMELINE || (slot == InspectorView.SLOT_NEWER && view.live())) {
+            if (!view.live()) {
+                view.unpin();
+                markDirty(targetId, InspectorView.ALL);
+            }
             return;
         }
-
-        Player target = Bukkit.getPlayer(session.targetId());
-        if (target == null || !target.isOnline()) {
-            viewer.closeInventory();
-            viewer.sendMessage(ChatColor.YELLOW + "Target went offline.");
-            stopSession(viewerId);
+        InspectorHistory.Ring ring = history.ring(targetId);
+        if (ring == null || ring.isEmpty()) {
+            viewer.sendMessage(ChatColor.YELLOW + "No history recorded for this player yet.");
             return;
         }
-
-        if (!(viewer.getOpenInventory().getTopInventory().getHolder() instanceof InspectorHolder)) {
-            stopSession(viewerId);
+        long seq;
+        if (slot == InspectorView.SLOT_OLDER) {
+            seq = view.live() ? ring.newest() : view.pinned() - 1;
+        } else {
+            seq = view.pinned() + 1;
+            if (seq > ring.newest()) {
+                view.unpin();
+                markDirty(targetId, InspectorView.ALL);
+                return;
+            }
+        }
+        InspectorHistory.Frame frame = ring.frame(seq);
+        if (frame == null) {
             return;
         }
-
-        fillInventory(session.inventory(), target);
+        long ago = Math.max(0, (System.currentTimeMillis() - frame.timeMillis()) / 1000);
+        view.pin(frame, ago + "s ago (" + frame.position() + " of " + frame.count() + ")");
     }
 
-    private void fillInventory(Inventory out, Player target) {
-        out.clear();
-
-        out.setItem(0, statItem(Material.RED_DYE, ChatColor.RED + "Health",
-                String.format("%.1f / %.1f", target.getHealth(), maxHealth(target))));
-        out.setItem(1, statItem(Material.COOKED_BEEF, ChatColor.GOLD + "Hunger",
-                target.getFoodLevel() + " / 20",
-                "Saturation: " + String.format("%.1f", target.getSaturation())));
-        out.setItem(2, statItem(Material.IRON_CHESTPLATE, ChatColor.AQUA + "Armor",
-                String.format("%.1f", target.getAttribute(Attribute.ARMOR).getValue())));
-        out.setItem(3, statItem(Material.EXPERIENCE_BOTTLE, ChatColor.GREEN + "Experience",
-                "Level: " + target.getLevel(),
-                "XP bar: " + String.format("%.2f", target.getExp())));
-        out.setItem(4, statItem(Material.COMPASS, ChatColor.YELLOW + "Location",
-                shortLocation(target.getLocation()),
-                "World: " + target.getWorld().getName()));
-        out.setItem(5, statItem(Material.CLOCK, ChatColor.LIGHT_PURPLE + "Status",
-                "Gamemode: " + target.getGameMode().name(),
-                "Effects: " + effectCount(target)));
-
-        PlayerInventory inv = target.getInventory();
-        out.setItem(9, cloneOrAir(inv.getHelmet()));
-        out.setItem(10, cloneOrAir(inv.getChestplate()));
-        out.setItem(11, cloneOrAir(inv.getLeggings()));
-        out.setItem(12, cloneOrAir(inv.getBoots()));
-        out.setItem(13, cloneOrAir(inv.getItemInOffHand()));
-        out.setItem(14, cloneOrAir(inv.getItemInMainHand()));
-
-        ItemStack[] storage = inv.getStorageContents();
-        for (int i = 9; i < 36 && i < storage.length; i++) {
-            out.setItem(18 + (i - 9), cloneOrAir(storage[i]));
+    /**
+     * Runs on the global region thread. Each inspected player with pending changes is snapshotted
+     * once on its own thread, whatever its viewer count. Targets refreshed less than
+     * {@link RefreshPacer#interval()} ticks ago, or beyond this tick's budget, stay queued in
+     * order.
+     */
+    private void tick() {
+        ticks++;
+        stats.onTick();
+        if (ticks % 20 == 0) {
+            emitStats(stats.roll());
         }
-        for (int i = 0; i < 9 && i < storage.length; i++) {
-            out.setItem(45 + i, cloneOrAir(storage[i]));
+        history.tick(this, ticks);
+        remote.tick(ticks);
+        pacer.onTick(ticks, viewing.size());
+        int interval = pacer.interval();
+        int budget = pacer.targetsPerTick();
+        for (int queued = dirtyOrder.size(); queued > 0 && budget > 0; queued--) {
+            UUID targetId = dirtyOrder.poll();
+            if (targetId == null) {
+                break;
+            }
+            Watch watch = watches.get(targetId);
+            if (watch == null) {
+                dirty.remove(targetId);
+                continue;
+            }
+            if (ticks - watch.lastRefreshTick < interval) {
+                dirtyOrder.add(targetId);
+                continue;
+            }
+            Integer sections = dirty.remove(targetId);
+            Player target = Bukkit.getPlayer(targetId);
+            if (sections == null || target == null) {
+                continue;
+            }
+            watch.lastRefreshTick = ticks;
+            budget--;
+            target.getScheduler().run(this, task -> publish(target, watch, sections), null);
         }
     }
 
-    private void stopSession(UUID viewerId) {
-        Session old = sessions.remove(viewerId);
-        if (old != null && old.taskId() > 0) {
-            Bukkit.getScheduler().cancelTask(old.taskId());
+    private void emitStats(InspectorStats.Window w) {
+        JfrEvents.Stats event = new JfrEvents.Stats();
+        if (!event.shouldCommit()) {
+            return;
         }
+        event.sessions = viewing.size();
+        event.targets = watches.size();
+        event.refreshesPerSecond = w.refreshesPerSecond();
+        event.slotsPerSecond = w.slotsPerSecond();
+        event.tickShare = w.tickShare();
+        event.intervalTicks = pacer.interval();
+        event.commit();
     }
 
-    private static ItemStack cloneOrAir(ItemStack item) {
-        if (item == null || item.getType() == Material.AIR) {
-            return new ItemStack(Material.AIR);
+    /** Runs on the target's thread; hands the snapshot to each viewer's thread. */
+    private void publish(Player target, Watch watch, int sections) {
+        JfrEvents.Capture event = new JfrEvents.Capture();
+        event.begin();
+        long started = System.nanoTime();
+        InspectorView.Snapshot snapshot = InspectorView.Snapshot.capture(target, sections);
+        long nanos = System.nanoTime() - started;
+        pacer.recordWork(nanos);
+        pacer.recordTarget();
+        stats.recordCapture(nanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.target = target.getName();
+            event.sections = sections;
+            event.viewers = watch.viewers.size();
+            event.commit();
+        }
+        for (Map.Entry<UUID, InspectorView> e : watch.viewers.entrySet()) {
+            Player viewer = Bukkit.getPlayer(e.getKey());
+            if (viewer == null) {
+                stopViewing(e.getKey());
+                continue;
+            }
+            InspectorView view = e.getValue();
+            viewer.getScheduler().run(this, task -> show(viewer, view, snapshot), null);
         }
-        return item.clone();
     }
 
-    private static ItemStack statItem(Material material, String name, String... lines) {
-        ItemStack item = new ItemStack(material);
-        ItemMeta meta = item.getItemMeta();
-        if (meta != null) {
-            meta.setDisplayName(name);
-            List<String> lore = new ArrayList<>();
-            for (String line : lines) {
-                lore.add(ChatColor.GRAY + line);
+    /** Runs on the viewer's thread. */
+    private void show(Player viewer, InspectorView view, InspectorView.Snapshot snapshot) {
+        if (viewer.getOpenInventory().getTopInventory() != view.inventory()) {
+            if (viewOf(viewer.getUniqueId()) == view) {
+                stopViewing(viewer.getUniqueId());
             }
-            meta.setLore(lore);
-            meta.addItemFlags(ItemFlag.HIDE_ATTRIBUTES);
-            item.setItemMeta(meta);
+            return;
+        }
+        if (!view.live()) {
+            return;
+        }
+        JfrEvents.Apply event = new JfrEvents.Apply();
+        event.begin();
+        long started = System.nanoTime();
+        int written = view.apply(snapshot);
+        long nanos = System.nanoTime() - started;
+        pacer.recordWork(nanos);
+        stats.recordApply(nanos, written);
+        event.end();
+        if (event.shouldCommit()) {
+            event.slotsWritten = written;
+            event.commit();
         }
-        return item;
     }
 
-    private static String shortLocation(Location loc) {
-        return String.format("x=%d y=%d z=%d", loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    private InspectorView viewOf(UUID viewerId) {
+        UUID targetId = viewing.get(viewerId);
+        Watch watch = targetId == null ? null : watches.get(targetId);
+        return watch == null ? null : watch.viewers.get(viewerId);
     }
 
-    private static String effectCount(Player player) {
-        int count = 0;
-        for (PotionEffect ignored : player.getActivePotionEffects()) {
-            count++;
+    private void stopViewing(UUID viewerId) {
+        UUID targetId = viewing.remove(viewerId);
+        if (targetId == null) {
+            return;
         }
-        return Integer.toString(count);
+        watches.computeIfPresent(targetId, (id, watch) -> {
+            watch.viewers.remove(viewerId);
+            return watch.viewers.isEmpty() ? null : watch;
+        });
     }
 
-    private static double maxHealth(Player player) {
-        if (player.getAttribute(Attribute.MAX_HEALTH) == null) {
-            return 20.0;
-        }
-        return player.getAttribute(Attribute.MAX_HEALTH).getValue();
+    private static final class Watch {
+        final Map<UUID, InspectorView> viewers = new ConcurrentHashMap<>();
+        volatile long lastRefreshTick = Long.MIN_VALUE / 2;
     }
 
-    private record Session(UUID targetId, Inventory inventory, int taskId) {}
-
     private static final class InspectorHolder implements InventoryHolder {
         @Override
         public Inventory getInventory() {
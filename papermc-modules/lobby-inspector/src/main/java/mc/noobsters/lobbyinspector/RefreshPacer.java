@@ -0,0 +1,99 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides how often a dirty target may be refreshed and how many targets one tick may refresh, from
+ * server MSPT, the number of open sessions and the measured cost of a refresh.
+ *
+ * <p>Re-evaluated once per second: the interval doubles (up to {@link #MAX_INTERVAL_TICKS}) while
+ * MSPT is over {@link #BUSY_MSPT}, and shrinks by one tick while it is under {@link #IDLE_MSPT},
+ * down to a floor that grows with the session count. Independently, inspector work in one tick is
+ * capped at {@link #TICK_BUDGET_NANOS}; targets over the cap wait for the next tick.</p>
+ */
+final class RefreshPacer {
+    private static final int MAX_INTERVAL_TICKS = 20;
+    private static final int SAMPLE_TICKS = 20;
+    private static final double BUSY_MSPT = 45.0;
+    private static final double IDLE_MSPT = 35.0;
+    /** Every this many open sessions add one tick to the minimum interval. */
+    private static final int SESSIONS_PER_TICK = 50;
+    private static final long TICK_BUDGET_NANOS = 2_000_000L;
+    private static final long TICK_NANOS = 50_000_000L;
+
+    private final LongAdder workNanos = new LongAdder();
+    private final LongAdder workTargets = new LongAdder();
+
+    private int interval = 1;
+    private int targetsPerTick = Integer.MAX_VALUE;
+    private long lastTickNanos;
+    private double tickSpacingMillis = 50.0;
+    private boolean msptUnavailable;
+
+    /** Called at the start of every global tick. */
+    void onTick(long tick, int sessions) {
+        long now = System.nanoTime();
+        if (lastTickNanos != 0) {
+            tickSpacingMillis = tickSpacingMillis * 0.9 + (now - lastTickNanos) / 1e6 * 0.1;
+        }
+        lastTickNanos = now;
+        if (tick % SAMPLE_TICKS == 0) {
+            sample(sessions);
+        }
+    }
+
+    /** Minimum ticks between two refreshes of the same target. */
+    int interval() {
+        return interval;
+    }
+
+    /** Targets the current tick may refresh within the time budget. */
+    int targetsPerTick() {
+        return targetsPerTick;
+    }
+
+    /** Records time spent capturing or applying one snapshot. Thread-safe. */
+    void recordWork(long nanos) {
+        workNanos.add(nanos);
+    }
+
+    /** Records one target refreshed (one capture plus its applies). Thread-safe. */
+    void recordTarget() {
+        workTargets.increment();
+    }
+
+    private void sample(int sessions) {
+        double mspt = mspt();
+        int floor = Math.min(MAX_INTERVAL_TICKS, 1 + sessions / SESSIONS_PER_TICK);
+        if (mspt > BUSY_MSPT) {
+            interval = Math.min(MAX_INTERVAL_TICKS, interval * 2);
+        } else if (mspt < IDLE_MSPT) {
+            interval--;
+        }
+        interval = Math.max(floor, interval);
+
+        long targets = workTargets.sumThenReset();
+        long nanos = workNanos.sumThenReset();
+        if (targets > 0) {
+            long perTarget = Math.max(1, nanos / targets);
+            targetsPerTick = (int) Math.max(1, Math.min(Integer.MAX_VALUE, TICK_BUDGET_NANOS / perTarget));
+        }
+    }
+
+    /**
+     * Server MSPT. Region-threaded servers may not report a global value; then the spacing of our
+     * own global ticks stands in, where ticks arriving on time count as headroom.
+     */
+    private double mspt() {
+        if (!msptUnavailable) {
+            try {
+                return Bukkit.getAverageTickTime();
+            } catch (UnsupportedOperationException e) {
+                msptUnavailable = true;
+            }
+        }
+        return tickSpacingMillis > TICK_NANOS / 1e6 * 1.05 ? tickSpacingMillis : 0.0;
+    }
+}
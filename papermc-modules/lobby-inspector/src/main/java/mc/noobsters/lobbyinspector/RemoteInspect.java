@@ -0,0 +1,510 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static mc.noobsters.lobbyinspector.RemoteProtocol.CHANNEL;
+
+/**
+ * Inspection of a player on another lobby backend, through ProxyOps' inspector relay on
+ * {@link RemoteProtocol#CHANNEL}. Each message names the player it is for; the relay finds that
+ * player's backend on its own proxy or, over Redis, on any other proxy of the network.
+ *
+ * <p>The viewer's server subscribes with a message addressed to the target. The target's server keeps
+ * a feed per inspected player: a full snapshot for each new or out-of-sync subscriber, then deltas
+ * for the changed stats and slots, sent at most every {@link #FEED_TICKS} ticks. The viewer renews
+ * its subscription every {@link #RENEW_MILLIS} with the last sequence number it applied. The target
+ * answers with a heartbeat, or with a full snapshot when the viewer is behind, so a dropped message
+ * is repaired by the next renewal at the latest. A viewer that sees a sequence gap asks for a full
+ * snapshot right away. Subscriptions that are not renewed expire on the target's side.</p>
+ */
+final class RemoteInspect implements Listener, PluginMessageListener {
+    private static final String TITLE_PREFIX = ChatColor.DARK_AQUA + "Inspect (remote): ";
+    private static final int FEED_TICKS = 5;
+    private static final long RENEW_MILLIS = 10_000;
+    private static final long LEASE_MILLIS = 3 * RENEW_MILLIS;
+    private static final long CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final long RESYNC_MIN_MILLIS = 1_000;
+
+    private final LobbyInspectorPlugin plugin;
+    /** Target side: feeds of local players inspected from other servers. */
+    private final Map<UUID, Feed> feeds = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> feedDirty = new ConcurrentHashMap<>();
+    /** Viewer side: local viewers inspecting a player on another server. */
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+
+    RemoteInspect(LobbyInspectorPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    void register() {
+        Bukkit.getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        Bukkit.getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    void unregister() {
+        Bukkit.getMessenger().unregisterOutgoingPluginChannel(plugin);
+        Bukkit.getMessenger().unregisterIncomingPluginChannel(plugin);
+        feeds.clear();
+        feedDirty.clear();
+        sessions.clear();
+    }
+
+    /** Opens a window on {@code targetName}, on any other lobby of the network. */
+    void subscribe(Player viewer, String targetName) {
+        Inventory inv = Bukkit.createInventory(new RemoteHolder(), InspectorView.SIZE, TITLE_PREFIX + targetName);
+        Session session = new Session(viewer.getUniqueId(), viewer.getName(), targetName, new InspectorView(inv));
+        viewer.openInventory(inv);
+        Session previous = sessions.put(viewer.getUniqueId(), session);
+        if (previous != null) {
+            previous.send(viewer, RemoteProtocol.UNSUBSCRIBE);
+        }
+        session.send(viewer, RemoteProtocol.SUBSCRIBE);
+        viewer.sendMessage(ChatColor.GRAY + "Looking for " + targetName + " on the other lobbies...");
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    int feedCount() {
+        return feeds.size();
+    }
+
+    void markChanged(UUID targetId, int sections) {
+        if (feeds.containsKey(targetId)) {
+            feedDirty.merge(targetId, sections, (a, b) -> a | b);
+        }
+    }
+
+    /** Called every global tick. */
+    void tick(long tick) {
+        if (tick % FEED_TICKS == 0) {
+            for (UUID targetId : feedDirty.keySet()) {
+                Integer sections = feedDirty.remove(targetId);
+                Feed feed = feeds.get(targetId);
+                Player target = Bukkit.getPlayer(targetId);
+                if (sections != null && feed != null && target != null) {
+                    target.getScheduler().run(plugin, task -> {
+                        long started = System.nanoTime();
+                        feed.publishDelta(target, sections);
+                        plugin.stats().recordBackground(System.nanoTime() - started);
+                    }, null);
+                }
+            }
+        }
+        if (tick % 20 == 0) {
+            housekeeping(System.currentTimeMillis());
+        }
+    }
+
+    private void housekeeping(long now) {
+        for (Feed feed : feeds.values()) {
+            feed.subscribers.values().removeIf(s -> s.leaseUntil() < now);
+            if (feed.subscribers.isEmpty()) {
+                feeds.remove(feed.targetId, feed);
+            }
+        }
+        for (Session session : sessions.values()) {
+            Player viewer = Bukkit.getPlayer(session.viewerId);
+            if (viewer == null) {
+                sessions.remove(session.viewerId, session);
+            } else if (session.lastSeq < 0 && now - session.openedAt > CONNECT_TIMEOUT_MILLIS) {
+                end(viewer, session, session.targetName + " was not found on another lobby.");
+            } else if (now - session.lastHeard > LEASE_MILLIS) {
+                end(viewer, session, "Lost contact with " + session.targetName + "'s server.");
+            } else if (now - session.lastRenew >= RENEW_MILLIS) {
+                session.send(viewer, RemoteProtocol.SUBSCRIBE);
+            }
+        }
+    }
+
+    private void end(Player viewer, Session session, String reason) {
+        if (!sessions.remove(session.viewerId, session)) {
+            return;
+        }
+        viewer.getScheduler().run(plugin, task -> {
+            if (viewer.getOpenInventory().getTopInventory() == session.view.inventory()) {
+                viewer.closeInventory();
+            }
+            viewer.sendMessage(ChatColor.YELLOW + reason);
+        }, null);
+    }
+
+    @Override
+    public void onPluginMessageReceived(String channel, Player carrier, byte[] message) {
+        if (!CHANNEL.equals(channel)) {
+            return;
+        }
+        if (message.length < 17) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            byte type = in.readByte();
+            UUID viewerId = RemoteProtocol.readUuid(in);
+            switch (type) {
+                case RemoteProtocol.SUBSCRIBE -> onSubscribe(carrier, viewerId, in.readUTF(), in.readUTF(), in.readInt());
+                case RemoteProtocol.UNSUBSCRIBE -> {
+                    Player target = Bukkit.getPlayerExact(in.readUTF());
+                    Feed feed = target == null ? null : feeds.get(target.getUniqueId());
+                    if (feed != null) {
+                        feed.subscribers.remove(viewerId);
+                    }
+                }
+                default -> {
+                    Session session = sessions.get(viewerId);
+                    Player viewer = Bukkit.getPlayer(viewerId);
+                    if (session != null && viewer != null) {
+                        viewer.getScheduler().run(plugin, task -> session.receive(viewer, type, message), null);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Dropped malformed inspector message: " + e);
+        }
+    }
+
+    private void onSubscribe(Player carrier, UUID viewerId, String viewerName, String targetName, int lastSeq) {
+        Player target = Bukkit.getPlayerExact(targetName);
+        if (target == null) {
+            sendTo(carrier, viewerName, end(viewerId, targetName + " left this server."));
+            return;
+        }
+        Feed feed = feeds.computeIfAbsent(target.getUniqueId(), id -> new Feed(id));
+        feed.subscribers.put(viewerId, new Subscriber(viewerName, System.currentTimeMillis() + LEASE_MILLIS));
+        target.getScheduler().run(plugin, task -> feed.answer(target, viewerId, viewerName, lastSeq), null);
+    }
+
+    @EventHandler
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getView().getTopInventory().getHolder() instanceof RemoteHolder) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (!(event.getPlayer() instanceof Player viewer)) {
+            return;
+        }
+        Session session = sessions.get(viewer.getUniqueId());
+        if (session != null && event.getInventory() == session.view.inventory()
+                && sessions.remove(viewer.getUniqueId(), session)) {
+            session.send(viewer, RemoteProtocol.UNSUBSCRIBE);
+        }
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        Player quitting = event.getPlayer();
+        Session session = sessions.remove(quitting.getUniqueId());
+        if (session != null) {
+            Player carrier = otherPlayer(quitting);
+            if (carrier != null) {
+                session.send(carrier, RemoteProtocol.UNSUBSCRIBE);
+            }
+        }
+        feedDirty.remove(quitting.getUniqueId());
+        Feed feed = feeds.remove(quitting.getUniqueId());
+        Player carrier = feed == null ? null : otherPlayer(quitting);
+        if (carrier != null) {
+            for (Map.Entry<UUID, Subscriber> e : feed.subscribers.entrySet()) {
+                sendTo(carrier, e.getValue().viewerName(), end(e.getKey(), quitting.getName() + " went offline."));
+            }
+        }
+    }
+
+    private static Player otherPlayer(Player except) {
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            if (!p.getUniqueId().equals(except.getUniqueId())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    private void sendTo(Player carrier, String playerName, byte[] message) {
+        carrier.sendPluginMessage(plugin, CHANNEL, RemoteProtocol.addressed(playerName, message));
+    }
+
+    private static byte[] end(UUID viewerId, String reason) {
+        return message(out -> {
+            RemoteProtocol.writeHeader(out, RemoteProtocol.END, viewerId);
+            out.writeUTF(reason);
+        });
+    }
+
+    private static byte[] message(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private record Subscriber(String viewerName, long leaseUntil) {}
+
+    /**
+     * Target side. {@code seq}, {@code sent} and {@code sentItems} are what every in-sync subscriber
+     * has applied; they are only touched on the target's thread.
+     */
+    private final class Feed {
+        final UUID targetId;
+        final Map<UUID, Subscriber> subscribers = new ConcurrentHashMap<>();
+        private final ItemStack[] sentItems = new ItemStack[InspectorView.SIZE];
+        private InspectorView.Stats sent;
+        private int seq;
+
+        Feed(UUID targetId) {
+            this.targetId = targetId;
+        }
+
+        void answer(Player target, UUID viewerId, String viewerName, int lastSeq) {
+            if (sent == null) {
+                sent = InspectorView.Stats.of(target);
+                ItemStack[] live = new ItemStack[InspectorView.SIZE];
+                InspectorView.readItems(target, InspectorView.ALL, live);
+                for (int slot : InspectorView.ITEM_SLOTS) {
+                    sentItems[slot] = InspectorView.isEmpty(live[slot]) ? null : live[slot].clone();
+                }
+            }
+            if (lastSeq >= 0 && lastSeq == seq) {
+                sendTo(target, viewerName, message(out -> {
+                    RemoteProtocol.writeHeader(out, RemoteProtocol.HEARTBEAT, viewerId);
+                    out.writeInt(seq);
+                }));
+                return;
+            }
+            List<byte[]> entries = new ArrayList<>(InspectorView.ITEM_SLOTS.length);
+            for (int slot : InspectorView.ITEM_SLOTS) {
+                entries.add(RemoteProtocol.encodeItem(slot, sentItems[slot]));
+            }
+            List<byte[]> parts = RemoteProtocol.packParts(sent, entries);
+            for (int i = 0; i < parts.size(); i++) {
+                sendTo(target, viewerName, data(RemoteProtocol.FULL, viewerId, i, parts));
+            }
+        }
+
+        void publishDelta(Player target, int sections) {
+            if (sent == null || subscribers.isEmpty()) {
+                return;
+            }
+            InspectorView.Stats stats = null;
+            if ((sections & ~(InspectorView.HANDS | InspectorView.STORAGE)) != 0) {
+                InspectorView.Stats now = InspectorView.Stats.of(target);
+                if (!now.equals(sent)) {
+                    stats = now;
+                    sent = now;
+                }
+            }
+            ItemStack[] live = new ItemStack[InspectorView.SIZE];
+            InspectorView.readItems(target, sections, live);
+            List<byte[]> entries = new ArrayList<>();
+            for (int slot : InspectorView.ITEM_SLOTS) {
+                if ((sections & InspectorView.sectionOf(slot)) == 0) {
+                    continue;
+                }
+                ItemStack current = InspectorView.isEmpty(live[slot]) ? null : live[slot];
+                if (current == null ? sentItems[slot] == null : current.equals(sentItems[slot])) {
+                    continue;
+                }
+                sentItems[slot] = current == null ? null : current.clone();
+                entries.add(RemoteProtocol.encodeItem(slot, current));
+            }
+            if (stats == null && entries.isEmpty()) {
+                return;
+            }
+            seq++;
+            List<byte[]> parts = RemoteProtocol.packParts(stats, entries);
+            for (Map.Entry<UUID, Subscriber> e : subscribers.entrySet()) {
+                for (int i = 0; i < parts.size(); i++) {
+                    sendTo(target, e.getValue().viewerName(), data(RemoteProtocol.DELTA, e.getKey(), i, parts));
+                }
+            }
+        }
+
+        private byte[] data(byte type, UUID viewerId, int part, List<byte[]> parts) {
+            return message(out -> {
+                RemoteProtocol.writeHeader(out, type, viewerId);
+                out.writeInt(seq);
+                out.writeByte(part);
+                out.writeByte(parts.size());
+                out.write(parts.get(part));
+            });
+        }
+    }
+
+    /** Viewer side. State other than the timestamps is only touched on the viewer's thread. */
+    private final class Session {
+        final UUID viewerId;
+        final String viewerName;
+        final String targetName;
+        final InspectorView view;
+        final long openedAt = System.currentTimeMillis();
+        private final ItemStack[] items = new ItemStack[InspectorView.SIZE];
+        private InspectorView.Stats stats;
+        /** Last fully applied sequence number, or -1 until the first full snapshot. */
+        volatile int lastSeq = -1;
+        private boolean synced;
+        private int partsSeq = -1;
+        private int partsSeen;
+        private int partsTotal;
+        private long lastResync;
+        volatile long lastHeard = System.currentTimeMillis();
+        volatile long lastRenew;
+
+        Session(UUID viewerId, String viewerName, String targetName, InspectorView view) {
+            this.viewerId = viewerId;
+            this.viewerName = viewerName;
+            this.targetName = targetName;
+            this.view = view;
+        }
+
+        /** Sends a SUBSCRIBE (renewal) or UNSUBSCRIBE through {@code carrier}. */
+        void send(Player carrier, byte type) {
+            int applied = synced ? lastSeq : -1;
+            lastRenew = System.currentTimeMillis();
+            sendTo(carrier, targetName, message(out -> {
+                RemoteProtocol.writeHeader(out, type, viewerId);
+                if (type == RemoteProtocol.SUBSCRIBE) {
+                    out.writeUTF(viewerName);
+                }
+                out.writeUTF(targetName);
+                if (type == RemoteProtocol.SUBSCRIBE) {
+                    out.writeInt(applied);
+                }
+            }));
+        }
+
+        void receive(Player viewer, byte type, byte[] message) {
+            if (sessions.get(viewerId) != this) {
+                return;
+            }
+            lastHeard = System.currentTimeMillis();
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message, 17, message.length - 17))) {
+                switch (type) {
+                    case RemoteProtocol.HEARTBEAT -> {
+                        if (synced && in.readInt() != lastSeq) {
+                            resync(viewer);
+                        }
+                    }
+                    case RemoteProtocol.END -> end(viewer, this, in.readUTF());
+                    case RemoteProtocol.FULL -> onFull(viewer, in);
+                    case RemoteProtocol.DELTA -> onDelta(viewer, in);
+                    default -> {
+                    }
+                }
+            } catch (IOException e) {
+                resync(viewer);
+            } catch (RuntimeException e) {
+                // Undecodable payload, e.g. items from a server on another version; a resync would repeat it.
+                plugin.getLogger().warning("Ending remote inspection of " + targetName + ": " + e);
+                end(viewer, this, "Could not read " + targetName + "'s inventory from their server.");
+            }
+        }
+
+        private void onFull(Player viewer, DataInputStream in) throws IOException {
+            int seq = in.readInt();
+            int part = in.readUnsignedByte();
+            int parts = in.readUnsignedByte();
+            if (part == 0) {
+                Arrays.fill(items, null);
+                startParts(seq, parts);
+            } else if (seq != partsSeq || part != partsSeen) {
+                resync(viewer);
+                return;
+            }
+            readPart(viewer, seq, in);
+        }
+
+        private void onDelta(Player viewer, DataInputStream in) throws IOException {
+            int seq = in.readInt();
+            int part = in.readUnsignedByte();
+            int parts = in.readUnsignedByte();
+            if (part == 0 && synced && seq == lastSeq + 1) {
+                startParts(seq, parts);
+            } else if (part > 0 && seq == partsSeq && part == partsSeen) {
+                // continuation of the update in progress
+            } else {
+                if (lastSeq >= 0 && seq > lastSeq) {
+                    resync(viewer);
+                }
+                return;
+            }
+            readPart(viewer, seq, in);
+        }
+
+        private void startParts(int seq, int parts) {
+            synced = false;
+            partsSeq = seq;
+            partsSeen = 0;
+            partsTotal = parts;
+        }
+
+        private void readPart(Player viewer, int seq, DataInputStream in) throws IOException {
+            if (in.readBoolean()) {
+                stats = RemoteProtocol.readStats(in);
+            }
+            int entries = RemoteProtocol.readVarInt(in);
+            for (int i = 0; i < entries; i++) {
+                RemoteProtocol.readItem(in, items);
+            }
+            if (++partsSeen < partsTotal) {
+                // A FULL cleared items on part 0; showing it now would blank slots still in later parts.
+                return;
+            }
+            lastSeq = seq;
+            synced = true;
+            if (viewer.getOpenInventory().getTopInventory() == view.inventory()) {
+                view.apply(new InspectorView.Snapshot(InspectorView.ALL, stats, items));
+            }
+        }
+
+        private void resync(Player viewer) {
+            long now = System.currentTimeMillis();
+            if (now - lastResync < RESYNC_MIN_MILLIS) {
+                return;
+            }
+            lastResync = now;
+            synced = false;
+            partsSeq = -1;
+            send(viewer, RemoteProtocol.SUBSCRIBE);
+        }
+    }
+
+    private static final class RemoteHolder implements InventoryHolder {
+        @Override
+        public Inventory getInventory() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package mc.noobsters.lobbyinspector;
+
+import org.bukkit.GameMode;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wire format for cross-server inspection. Lobbies send each message on {@link #CHANNEL} prefixed
+ * with the addressed player's name; ProxyOps' inspector relay hands it to that player's backend,
+ * through another proxy over Redis when needed, and the backend receives the bare message.
+ *
+ * <p>Every message starts with a type byte and the viewer's UUID. Data messages ({@link #FULL},
+ * {@link #DELTA}) carry the feed's sequence number and a part index and count, because one update
+ * can be split to stay under {@link #MAX_PART_BYTES}. A {@code FULL} replaces the viewer's state;
+ * a {@code DELTA} carries only the stats (when they changed) and the slots that changed since the
+ * previous sequence number. A viewer that sees a gap asks for a new {@code FULL}.</p>
+ */
+final class RemoteProtocol {
+    static final String CHANNEL = "lobbyinspector:relay";
+
+    static final byte SUBSCRIBE = 1;
+    static final byte UNSUBSCRIBE = 2;
+    static final byte FULL = 3;
+    static final byte DELTA = 4;
+    static final byte HEARTBEAT = 5;
+    static final byte END = 6;
+
+    /** Leaves room for the relay framing under the 32767-byte custom payload limit of older clients' codecs. */
+    static final int MAX_PART_BYTES = 30_000;
+
+    private static final byte ITEM_EMPTY = 0;
+    private static final byte ITEM_FULL = 1;
+    /** Item too large for one message: only material and amount are sent. */
+    private static final byte ITEM_REDUCED = 2;
+
+    private RemoteProtocol() {
+    }
+
+    /** Prefixes {@code message} with the player the relay should deliver it to. */
+    static byte[] addressed(String playerName, byte[] message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(playerName);
+            out.write(message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void writeHeader(DataOutput out, byte type, UUID viewerId) throws IOException {
+        out.writeByte(type);
+        out.writeLong(viewerId.getMostSignificantBits());
+        out.writeLong(viewerId.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeStats(DataOutput out, InspectorView.Stats s) throws IOException {
+        out.writeFloat((float) s.health());
+        out.writeFloat((float) s.maxHealth());
+        out.writeByte(s.food());
+        out.writeFloat(s.saturation());
+        out.writeFloat((float) s.armor());
+        writeVarInt(out, s.level());
+        out.writeFloat(s.exp());
+        writeVarInt(out, zigzag(s.blockX()));
+        writeVarInt(out, zigzag(s.blockY()));
+        writeVarInt(out, zigzag(s.blockZ()));
+        out.writeUTF(s.world());
+        out.writeByte(s.gameMode().ordinal());
+        writeVarInt(out, s.effects());
+    }
+
+    static InspectorView.Stats readStats(DataInput in) throws IOException {
+        float health = in.readFloat();
+        float maxHealth = in.readFloat();
+        int food = in.readUnsignedByte();
+        float saturation = in.readFloat();
+        float armor = in.readFloat();
+        int level = readVarInt(in);
+        float exp = in.readFloat();
+        int x = unzigzag(readVarInt(in));
+        int y = unzigzag(readVarInt(in));
+        int z = unzigzag(readVarInt(in));
+        String world = in.readUTF();
+        int modeOrdinal = in.readUnsignedByte();
+        GameMode mode = InspectorView.gameMode(modeOrdinal);
+        if (mode == null) {
+            throw new IOException("Unknown game mode " + modeOrdinal);
+        }
+        return new InspectorView.Stats(health, maxHealth, food, saturation, armor, level, exp, x, y, z, world,
+                mode, readVarInt(in));
+    }
+
+    /** Encodes one slot entry: window slot, then the stack (or nothing when empty). */
+    static byte[] encodeItem(int slot, ItemStack item) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(slot);
+            if (InspectorView.isEmpty(item)) {
+                out.writeByte(ITEM_EMPTY);
+                return bytes.toByteArray();
+            }
+            byte[] data = item.serializeAsBytes();
+            if (data.length > MAX_PART_BYTES - 512) {
+                out.writeByte(ITEM_REDUCED);
+                out.writeUTF(item.getType().name());
+                out.writeByte(item.getAmount());
+            } else {
+                out.writeByte(ITEM_FULL);
+                writeVarInt(out, data.length);
+                out.write(data);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads one slot entry into {@code items}. Item data that Paper cannot deserialize (corrupt, or
+     * from a newer data version) surfaces as a {@link RuntimeException}.
+     */
+    static void readItem(DataInput in, ItemStack[] items) throws IOException {
+        int slot = in.readUnsignedByte();
+        byte kind = in.readByte();
+        ItemStack item = null;
+        if (kind == ITEM_FULL) {
+            int length = readVarInt(in);
+            if (length <= 0 || length > MAX_PART_BYTES) {
+                throw new IOException("Bad item length " + length);
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            item = ItemStack.deserializeBytes(data);
+        } else if (kind == ITEM_REDUCED) {
+            Material material = Material.getMaterial(in.readUTF());
+            int amount = in.readUnsignedByte();
+            item = material == null ? null : new ItemStack(material, amount);
+        }
+        if (slot < items.length) {
+            items[slot] = item;
+        }
+    }
+
+    /**
+     * Splits a data message into parts of at most {@link #MAX_PART_BYTES}. The first part carries
+     * the stats (if any); item entries are packed in order. Each part body is
+     * {@code [hasStats][stats?][entryCount][entries...]}.
+     */
+    static List<byte[]> packParts(InspectorView.Stats stats, List<byte[]> entries) {
+        List<byte[]> parts = new ArrayList<>();
+        List<byte[]> inPart = new ArrayList<>();
+        byte[] statBytes = null;
+        if (stats != null) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream(48);
+            try (DataOutputStream out = new DataOutputStream(b)) {
+                writeStats(out, stats);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            statBytes = b.toByteArray();
+        }
+        int size = statBytes == null ? 0 : statBytes.length;
+        for (byte[] entry : entries) {
+            if (!inPart.isEmpty() && size + entry.length > MAX_PART_BYTES) {
+                parts.add(part(parts.isEmpty() ? statBytes : null, inPart));
+                inPart.clear();
+                size = 0;
+            }
+            inPart.add(entry);
+            size += entry.length;
+        }
+        if (!inPart.isEmpty() || parts.isEmpty()) {
+            parts.add(part(parts.isEmpty() ? statBytes : null, inPart));
+        }
+        return parts;
+    }
+
+    private static byte[] part(byte[] statBytes, List<byte[]> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(statBytes != null);
+            if (statBytes != null) {
+                out.write(statBytes);
+            }
+            writeVarInt(out, entries.size());
+            for (byte[] entry : entries) {
+                out.write(entry);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,161 @@
+package mc.noobsters.lobbyinspector;
+
+import com.destroystokyo.paper.event.player.PlayerArmorChangeEvent;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.EntityPotionEffectEvent;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+import org.bukkit.event.entity.FoodLevelChangeEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerExpChangeEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerItemDamageEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerLevelChangeEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+
+import static mc.noobsters.lobbyinspector.InspectorView.ALL;
+import static mc.noobsters.lobbyinspector.InspectorView.ARMOR;
+import static mc.noobsters.lobbyinspector.InspectorView.FOOD;
+import static mc.noobsters.lobbyinspector.InspectorView.HANDS;
+import static mc.noobsters.lobbyinspector.InspectorView.HEALTH;
+import static mc.noobsters.lobbyinspector.InspectorView.LOCATION;
+import static mc.noobsters.lobbyinspector.InspectorView.STATUS;
+import static mc.noobsters.lobbyinspector.InspectorView.STORAGE;
+import static mc.noobsters.lobbyinspector.InspectorView.XP;
+
+/**
+ * Marks inspector sections dirty when something changes on an inspected player. Events fire before
+ * the change is applied; the plugin flushes dirty sections on the next tick, when the new state is
+ * visible.
+ */
+final class TargetChangeListener implements Listener {
+    private final LobbyInspectorPlugin plugin;
+
+    TargetChangeListener(LobbyInspectorPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDamage(EntityDamageEvent event) {
+        // Armor absorbs the hit and loses durability.
+        mark(event.getEntity(), HEALTH | ARMOR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onRegainHealth(EntityRegainHealthEvent event) {
+        // Natural regeneration spends saturation.
+        mark(event.getEntity(), HEALTH | FOOD);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFoodLevelChange(FoodLevelChangeEvent event) {
+        mark(event.getEntity(), FOOD);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        mark(event.getWhoClicked(), ARMOR | HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        mark(event.getWhoClicked(), ARMOR | HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        mark(event.getPlayer(), HANDS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        mark(event.getPlayer(), HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        mark(event.getEntity(), HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent event) {
+        mark(event.getPlayer(), HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onConsume(PlayerItemConsumeEvent event) {
+        mark(event.getPlayer(), HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        mark(event.getPlayer(), HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemDamage(PlayerItemDamageEvent event) {
+        mark(event.getPlayer(), ARMOR | HANDS | STORAGE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onArmorChange(PlayerArmorChangeEvent event) {
+        mark(event.getPlayer(), ARMOR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPotionEffect(EntityPotionEffectEvent event) {
+        mark(event.getEntity(), STATUS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGameModeChange(PlayerGameModeChangeEvent event) {
+        mark(event.getPlayer(), STATUS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onExpChange(PlayerExpChangeEvent event) {
+        mark(event.getPlayer(), XP);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLevelChange(PlayerLevelChangeEvent event) {
+        mark(event.getPlayer(), XP);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        // Covers teleports too; sub-block movement does not change what the window shows.
+        if (event.hasChangedBlock()) {
+            mark(event.getPlayer(), LOCATION);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        mark(event.getPlayer(), LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        mark(event.getPlayer(), ALL);
+    }
+
+    private void mark(Entity entity, int sections) {
+        if (entity instanceof HumanEntity) {
+            plugin.markDirty(entity.getUniqueId(), sections);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package mc.noobsters.loadgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One headless offline-mode player. {@link #run()} is the bot's script and blocks for the bot's
+ * whole life: join, optionally ask Velocity which backend it landed on, hop through the configured
+ * servers, stay, then leave. A second virtual thread reads the connection and answers what a
+ * vanilla client must (keep-alives, pings, known packs, configuration handshakes, cookies), and
+ * follows transfer packets to their target proxy on its own, keeping stored cookies like a real client.
+ *
+ * <p>The reader hands the script only what it waits for: play logins, chat while a probe is pending,
+ * and the end of the connection.</p>
+ */
+final class BotClient {
+    /** Velocity's {@code /server} reply, {@code You are currently connected to <name>.} */
+    private static final Pattern CURRENT_SERVER = Pattern.compile("connected to (\\S+?)\\.?(?:\\s|$)");
+
+    private enum Phase { LOGIN, CONFIGURATION, PLAY }
+
+    private sealed interface Event permits Joined, Chat, Closed {}
+
+    private record Joined(long atNanos, boolean afterTransfer) implements Event {}
+
+    private record Chat(String text) implements Event {}
+
+    private record Closed(String reason) implements Event {}
+
+    /** Raised in the script when the connection ended while it was waiting or sending. */
+    private static final class BotClosed extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BotClosed(String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    private final String name;
+    private final UUID uuid;
+    private final LoadConfig config;
+    private final LoadReport report;
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+    private volatile Connection connection;
+    private volatile Phase phase = Phase.LOGIN;
+    private volatile boolean wantChat;
+    private volatile boolean closing;
+
+    // Script thread only: the backend the bot was last seen on, for checking where a transfer lands.
+    private String backend;
+
+    // Reader thread only.
+    private final Map<String, byte[]> cookies = new HashMap<>();
+    private long connectStarted;
+    private long transferStarted;
+    private boolean loginRecorded;
+
+    BotClient(String name, LoadConfig config, LoadReport report) {
+        this.name = name;
+        this.uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+        this.config = config;
+        this.report = report;
+    }
+
+    void run() {
+        report.launched();
+        connectStarted = System.nanoTime();
+        try {
+            connection = Connection.open(config.host(), config.port(), timeoutMillis());
+            begin(connection, config.host(), config.port(), Protocol.INTENT_LOGIN);
+        } catch (IOException e) {
+            report.joinFailed(describe(e));
+            return;
+        }
+        Thread.ofVirtual().name("read-" + name).start(this::readLoop);
+        try {
+            script();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closing = true;
+            connection.close();
+        }
+    }
+
+    private void script() throws InterruptedException {
+        try {
+            Joined joined = awaitJoin();
+            if (joined == null) {
+                report.joinFailed("timed out after " + config.timeout().toSeconds() + "s");
+                return;
+            }
+            report.joined(joined.atNanos() - connectStarted);
+        } catch (BotClosed e) {
+            report.joinFailed(e.getMessage());
+            return;
+        }
+        try {
+            if (config.probeBackend()) {
+                backend = probeBackend();
+                report.initialBackend(backend == null ? "(unknown)" : backend);
+            }
+            for (String target : config.hops()) {
+                pause(config.hopDwell());
+                long sent = System.nanoTime();
+                Joined hopped;
+                try {
+                    command("server " + target);
+                    hopped = awaitJoin();
+                } catch (BotClosed e) {
+                    report.hopFailed(target, e.getMessage());
+                    return;
+                }
+                if (hopped == null) {
+                    report.hopFailed(target, "timed out after " + config.timeout().toSeconds() + "s");
+                } else {
+                    report.hops.add(hopped.atNanos() - sent);
+                    backend = target;
+                }
+            }
+            pause(config.stay());
+            if (config.probeBackend()) {
+                String last = probeBackend();
+                report.finalBackend(last == null ? "(unknown)" : last);
+            }
+        } catch (BotClosed e) {
+            report.disconnected(e.getMessage());
+        } finally {
+            report.left();
+        }
+    }
+
+    /** Next play login that was not caused by a transfer, or {@code null} on timeout. */
+    private Joined awaitJoin() throws InterruptedException, BotClosed {
+        long deadline = System.nanoTime() + config.timeout().toNanos();
+        for (Event event = poll(deadline); event != null; event = poll(deadline)) {
+            if (event instanceof Joined joined && !joined.afterTransfer()) {
+                return joined;
+            }
+        }
+        return null;
+    }
+
+    /** Asks Velocity which backend this bot is on; {@code null} when it did not say in time. */
+    private String probeBackend() throws InterruptedException, BotClosed {
+        if (phase != Phase.PLAY) {
+            return null;
+        }
+        wantChat = true;
+        try {
+            command("server");
+            long deadline = System.nanoTime() + config.timeout().toNanos();
+            for (Event event = poll(deadline); event != null; event = poll(deadline)) {
+                if (event instanceof Chat chat) {
+                    Matcher m = CURRENT_SERVER.matcher(chat.text());
+                    if (m.find()) {
+                        return m.group(1);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            wantChat = false;
+        }
+    }
+
+    /**
+     * Waits out {@code duration}, draining events. Transfers in the meantime are handled by the
+     * reader; once one lands, the bot probes its backend to check that the route cookie kept it.
+     */
+    private void pause(Duration duration) throws InterruptedException, BotClosed {
+        long deadline = System.nanoTime() + duration.toNanos();
+        for (Event event = poll(deadline); event != null; event = poll(deadline)) {
+            if (event instanceof Joined joined && joined.afterTransfer() && config.probeBackend() && backend != null) {
+                String after = probeBackend();
+                report.routeAfterTransfer(backend, after);
+                if (after != null) {
+                    backend = after;
+                }
+            }
+        }
+    }
+
+    /** Next event before {@code deadline}, or {@code null}. A closed connection throws. */
+    private Event poll(long deadline) throws InterruptedException, BotClosed {
+        long wait = deadline - System.nanoTime();
+        Event event = wait > 0 ? events.poll(wait, TimeUnit.NANOSECONDS) : events.poll();
+        if (event instanceof Closed closed) {
+            throw new BotClosed(closed.reason());
+        }
+        return event;
+    }
+
+    private void command(String command) throws BotClosed {
+        try {
+            connection.send(PacketOut.of(Protocol.PLAY_CHAT_COMMAND).writeString(command));
+        } catch (IOException e) {
+            throw new BotClosed("send failed: " + describe(e));
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                Connection c = connection;
+                PacketIn packet = c.read();
+                int id = packet.readVarInt();
+                switch (phase) {
+                    case LOGIN -> login(c, id, packet);
+                    case CONFIGURATION -> configuration(c, id, packet);
+                    case PLAY -> play(c, id, packet);
+                }
+            }
+        } catch (IOException e) {
+            if (closing) {
+                return;
+            }
+            String reason = describe(e);
+            if (transferStarted != 0) {
+                report.transferFailed(reason);
+            }
+            events.add(new Closed(reason));
+        }
+    }
+
+    private void login(Connection c, int id, PacketIn in) throws IOException {
+        switch (id) {
+            case Protocol.LOGIN_DISCONNECT -> throw new IOException("kicked at login: " + in.readString());
+            case Protocol.LOGIN_ENCRYPTION_REQUEST -> throw new IOException("server requested encryption (online mode)");
+            case Protocol.LOGIN_SET_COMPRESSION -> c.enableCompression(in.readVarInt());
+            case Protocol.LOGIN_PLUGIN_REQUEST ->
+                    c.send(PacketOut.of(Protocol.LOGIN_PLUGIN_RESPONSE).writeVarInt(in.readVarInt()).writeBoolean(false));
+            case Protocol.LOGIN_COOKIE_REQUEST -> c.send(cookieResponse(Protocol.LOGIN_COOKIE_RESPONSE, in.readString()));
+            case Protocol.LOGIN_SUCCESS -> {
+                if (!loginRecorded) {
+                    loginRecorded = true;
+                    report.logins.add(System.nanoTime() - connectStarted);
+                }
+                c.send(PacketOut.of(Protocol.LOGIN_ACKNOWLEDGED));
+                phase = Phase.CONFIGURATION;
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void configuration(Connection c, int id, PacketIn in) throws IOException {
+        switch (id) {
+            case Protocol.CONFIG_COOKIE_REQUEST -> c.send(cookieResponse(Protocol.CONFIG_COOKIE_RESPONSE, in.readString()));
+            case Protocol.CONFIG_DISCONNECT -> throw new IOException("kicked: " + TextComponents.readNbt(in));
+            case Protocol.CONFIG_FINISH -> {
+                c.send(PacketOut.of(Protocol.CONFIG_FINISH_ACKNOWLEDGED));
+                phase = Phase.PLAY;
+            }
+            case Protocol.CONFIG_KEEP_ALIVE -> c.send(PacketOut.of(Protocol.CONFIG_KEEP_ALIVE_RESPONSE).writeLong(in.readLong()));
+            case Protocol.CONFIG_PING -> c.send(PacketOut.of(Protocol.CONFIG_PONG).writeInt(in.readInt()));
+            case Protocol.CONFIG_STORE_COOKIE -> cookies.put(in.readString(), in.readByteArray());
+            case Protocol.CONFIG_TRANSFER -> transfer(in.readString(), in.readVarInt());
+            // Claim every pack the server offers, so registries arrive without their data.
+            case Protocol.CONFIG_KNOWN_PACKS -> c.send(PacketOut.of(Protocol.CONFIG_KNOWN_PACKS_RESPONSE)
+                    .writeBytes(in.array(), in.position(), in.remaining()));
+            default -> {
+            }
+        }
+    }
+
+    private void play(Connection c, int id, PacketIn in) throws IOException {
+        switch (id) {
+            case Protocol.PLAY_LOGIN -> {
+                long now = System.nanoTime();
+                boolean afterTransfer = transferStarted != 0;
+                if (afterTransfer) {
+                    report.transfers.add(now - transferStarted);
+                    transferStarted = 0;
+                }
+                events.add(new Joined(now, afterTransfer));
+            }
+            case Protocol.PLAY_KEEP_ALIVE -> c.send(PacketOut.of(Protocol.PLAY_KEEP_ALIVE_RESPONSE).writeLong(in.readLong()));
+            case Protocol.PLAY_START_CONFIGURATION -> {
+                c.send(PacketOut.of(Protocol.PLAY_CONFIGURATION_ACKNOWLEDGED));
+                phase = Phase.CONFIGURATION;
+            }
+            case Protocol.PLAY_DISCONNECT -> throw new IOException("kicked: " + TextComponents.readNbt(in));
+            case Protocol.PLAY_COOKIE_REQUEST -> c.send(cookieResponse(Protocol.PLAY_COOKIE_RESPONSE, in.readString()));
+            case Protocol.PLAY_STORE_COOKIE -> cookies.put(in.readString(), in.readByteArray());
+            case Protocol.PLAY_SYSTEM_CHAT -> {
+                // Lobbies broadcast every join; only parse chat while the script is waiting for a reply.
+                if (wantChat) {
+                    events.add(new Chat(TextComponents.readNbt(in)));
+                }
+            }
+            case Protocol.PLAY_TRANSFER -> transfer(in.readString(), in.readVarInt());
+            default -> {
+            }
+        }
+    }
+
+    /** Reconnects to {@code host:port} with the transfer intent, as a vanilla client does. */
+    private void transfer(String host, int port) throws IOException {
+        transferStarted = System.nanoTime();
+        connection.close();
+        Connection next;
+        try {
+            next = Connection.open(host, port, timeoutMillis());
+        } catch (IOException e) {
+            throw new IOException("transfer to " + host + ":" + port + ": " + describe(e), e);
+        }
+        connection = next;
+        if (closing) {
+            next.close();
+            return;
+        }
+        begin(next, host, port, Protocol.INTENT_TRANSFER);
+    }
+
+    private void begin(Connection c, String host, int port, int intent) throws IOException {
+        phase = Phase.LOGIN;
+        c.send(PacketOut.of(Protocol.HANDSHAKE)
+                .writeVarInt(config.protocol())
+                .writeString(host)
+                .writeShort(port)
+                .writeVarInt(intent));
+        c.send(PacketOut.of(Protocol.LOGIN_START).writeString(name).writeUuid(uuid));
+    }
+
+    private PacketOut cookieResponse(int id, String key) {
+        byte[] payload = cookies.get(key);
+        PacketOut out = PacketOut.of(id).writeString(key).writeBoolean(payload != null);
+        return payload == null ? out : out.writeByteArray(payload);
+    }
+
+    private int timeoutMillis() {
+        return (int) config.timeout().toMillis();
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+}
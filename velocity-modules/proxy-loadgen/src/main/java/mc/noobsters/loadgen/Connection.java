@@ -0,0 +1,185 @@
+package mc.noobsters.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One blocking TCP connection speaking length-prefixed Minecraft frames, with optional zlib
+ * compression once the server sends Set Compression. No encryption: bots only join offline-mode proxies.
+ *
+ * <p>One thread reads; writes are serialized, so the bot's script thread may send while its
+ * reader thread answers keep-alives.</p>
+ *
+ * <p>The zlib streams hold native memory (a Deflater about 256 KB), so they are created on first
+ * use and ended in {@link #close()} rather than left to GC. Bots rarely send packets above the
+ * compression threshold, so most connections never create a Deflater.</p>
+ */
+final class Connection implements Closeable {
+    /** Upper bound of a vanilla frame (2^21 - 1). */
+    private static final int MAX_FRAME = 2_097_151;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Object inflaterLock = new Object();
+    private Inflater inflater;
+    private Deflater deflater;
+    private boolean closed;
+    private volatile int threshold = -1;
+
+    private Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    static Connection open(String host, int port, int timeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            // Servers send a keep-alive every 15 s; anything quieter than this is a dead connection.
+            socket.setSoTimeout(Math.max(timeoutMillis, 35_000));
+            return new Connection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    void enableCompression(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /** Reads the next frame; the returned packet is positioned at its id. */
+    PacketIn read() throws IOException {
+        int length = readVarInt();
+        if (length <= 0 || length > MAX_FRAME) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        PacketIn packet = new PacketIn(frame, 0, length);
+        if (threshold < 0) {
+            return packet;
+        }
+        int dataLength = packet.readVarInt();
+        if (dataLength == 0) {
+            return packet;
+        }
+        if (dataLength > MAX_FRAME * 4) {
+            throw new IOException("Bad uncompressed length " + dataLength);
+        }
+        byte[] data = new byte[dataLength];
+        synchronized (inflaterLock) {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            inflater.reset();
+            inflater.setInput(frame, packet.position(), packet.remaining());
+            try {
+                int n = 0;
+                while (n < dataLength) {
+                    int read = inflater.inflate(data, n, dataLength - n);
+                    if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated compressed packet");
+                    }
+                    n += read;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Bad compressed packet", e);
+            }
+        }
+        return new PacketIn(data, 0, dataLength);
+    }
+
+    void send(PacketOut packet) throws IOException {
+        synchronized (out) {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            int threshold = this.threshold;
+            if (threshold < 0) {
+                writeVarInt(packet.size());
+                out.write(packet.array(), 0, packet.size());
+            } else if (packet.size() < threshold) {
+                writeVarInt(packet.size() + 1);
+                out.write(0);
+                out.write(packet.array(), 0, packet.size());
+            } else {
+                PacketOut compressed = new PacketOut();
+                byte[] chunk = new byte[4096];
+                if (deflater == null) {
+                    deflater = new Deflater();
+                }
+                deflater.reset();
+                deflater.setInput(packet.array(), 0, packet.size());
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    compressed.writeBytes(chunk, 0, n);
+                }
+                writeVarInt(PacketOut.varIntSize(packet.size()) + compressed.size());
+                writeVarInt(packet.size());
+                out.write(compressed.array(), 0, compressed.size());
+            }
+            out.flush();
+        }
+    }
+
+    /** Closes the socket first, so a blocked reader or writer fails and releases its stream. */
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Closing is best-effort.
+        }
+        synchronized (out) {
+            closed = true;
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+        synchronized (inflaterLock) {
+            closed = true;
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
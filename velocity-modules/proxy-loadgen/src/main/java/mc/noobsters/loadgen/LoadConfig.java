@@ -0,0 +1,63 @@
+package mc.noobsters.loadgen;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/** One run's scenario, read from {@code LOADGEN_*} environment variables. */
+record LoadConfig(
+        String host,
+        int port,
+        int protocol,
+        int bots,
+        double joinRate,
+        String namePrefix,
+        boolean probeBackend,
+        List<String> hops,
+        Duration hopDwell,
+        Duration stay,
+        Duration timeout,
+        Duration progressInterval) {
+
+    static LoadConfig fromEnv() {
+        LoadConfig config = new LoadConfig(
+                envOr("LOADGEN_HOST", "127.0.0.1"),
+                Integer.parseInt(envOr("LOADGEN_PORT", "25577")),
+                Integer.parseInt(envOr("LOADGEN_PROTOCOL", String.valueOf(Protocol.VERSION_1_21_4))),
+                Integer.parseInt(envOr("LOADGEN_BOTS", "100")),
+                Double.parseDouble(envOr("LOADGEN_JOIN_RATE", "50")),
+                envOr("LOADGEN_NAME_PREFIX", "lg"),
+                Boolean.parseBoolean(envOr("LOADGEN_PROBE_BACKEND", "true")),
+                Arrays.stream(envOr("LOADGEN_HOPS", "").split(","))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .toList(),
+                Duration.ofMillis(Long.parseLong(envOr("LOADGEN_HOP_DWELL_MILLIS", "2000"))),
+                Duration.ofSeconds(Long.parseLong(envOr("LOADGEN_STAY_SECONDS", "30"))),
+                Duration.ofSeconds(Long.parseLong(envOr("LOADGEN_TIMEOUT_SECONDS", "20"))),
+                Duration.ofSeconds(Long.parseLong(envOr("LOADGEN_PROGRESS_SECONDS", "5"))));
+        if (config.bots() < 1 || config.joinRate() <= 0) {
+            throw new IllegalArgumentException("LOADGEN_BOTS and LOADGEN_JOIN_RATE must be positive.");
+        }
+        if (config.namePrefix().length() + String.valueOf(config.bots() - 1).length() > 16) {
+            throw new IllegalArgumentException("LOADGEN_NAME_PREFIX is too long for " + config.bots() + " bots (16 character names).");
+        }
+        return config;
+    }
+
+    /** Offline-mode username of bot {@code index}, zero-padded so names sort in launch order. */
+    String name(int index) {
+        int width = String.valueOf(bots - 1).length();
+        return namePrefix + String.format("%0" + width + "d", index);
+    }
+
+    String describe() {
+        return "Target " + host + ":" + port + " (protocol " + protocol + "), " + bots + " bots at " + joinRate
+                + "/s, hops " + (hops.isEmpty() ? "none" : String.join(" -> ", hops)) + ", stay " + stay.toSeconds() + "s";
+    }
+
+    private static String envOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isBlank()) ? def : v;
+    }
+}
@@ -0,0 +1,58 @@
+package mc.noobsters.loadgen;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Offline-mode join storm against a Velocity proxy. Launches {@code LOADGEN_BOTS} bots at
+ * {@code LOADGEN_JOIN_RATE} per second, one virtual thread each (plus one reading its socket), waits
+ * for every script to finish and prints join latency percentiles, backend distribution, hop and
+ * transfer times. Ctrl+C prints the report gathered so far.
+ */
+public final class LoadGen {
+    private LoadGen() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadConfig config = LoadConfig.fromEnv();
+        LoadReport report = new LoadReport();
+        long started = System.nanoTime();
+        AtomicBoolean printed = new AtomicBoolean();
+        Runnable printReport = () -> {
+            if (printed.compareAndSet(false, true)) {
+                report.print(System.out, Duration.ofNanos(System.nanoTime() - started));
+                System.out.flush();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(new Thread(printReport, "loadgen-report"));
+        System.out.println(config.describe());
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadgen-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = config.progressInterval().toMillis();
+        progress.scheduleAtFixedRate(
+                () -> System.out.println(report.progressLine(Duration.ofNanos(System.nanoTime() - started))),
+                every, every, TimeUnit.MILLISECONDS);
+
+        long spacingNanos = (long) (1e9 / config.joinRate());
+        try (ExecutorService bots = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.bots(); i++) {
+                long wait = started + i * spacingNanos - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                BotClient bot = new BotClient(config.name(i), config, report);
+                bots.execute(bot::run);
+            }
+        }
+        progress.shutdownNow();
+        printReport.run();
+    }
+}
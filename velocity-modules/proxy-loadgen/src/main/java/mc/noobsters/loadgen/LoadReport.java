@@ -0,0 +1,162 @@
+package mc.noobsters.loadgen;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and latency samples shared by all bots of a run. Every method is thread-safe. */
+final class LoadReport {
+    private static final int MAX_REASON_LENGTH = 100;
+
+    final Latencies logins = new Latencies();
+    final Latencies joins = new Latencies();
+    final Latencies hops = new Latencies();
+    final Latencies transfers = new Latencies();
+
+    private final LongAdder launched = new LongAdder();
+    private final LongAdder joinFailures = new LongAdder();
+    private final LongAdder hopFailures = new LongAdder();
+    private final LongAdder transferFailures = new LongAdder();
+    private final LongAdder routesKept = new LongAdder();
+    private final LongAdder routesChanged = new LongAdder();
+    private final LongAdder routesUnknown = new LongAdder();
+    private final AtomicInteger online = new AtomicInteger();
+    private final Map<String, LongAdder> initialBackends = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> finalBackends = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    void launched() {
+        launched.increment();
+    }
+
+    void joined(long connectToPlayNanos) {
+        joins.add(connectToPlayNanos);
+        online.incrementAndGet();
+    }
+
+    void left() {
+        online.decrementAndGet();
+    }
+
+    void joinFailed(String reason) {
+        joinFailures.increment();
+        failure("join: " + reason);
+    }
+
+    void hopFailed(String target, String reason) {
+        hopFailures.increment();
+        failure("hop to " + target + ": " + reason);
+    }
+
+    void transferFailed(String reason) {
+        transferFailures.increment();
+        failure("transfer: " + reason);
+    }
+
+    void disconnected(String reason) {
+        failure("disconnected: " + reason);
+    }
+
+    void initialBackend(String backend) {
+        initialBackends.computeIfAbsent(backend, k -> new LongAdder()).increment();
+    }
+
+    void finalBackend(String backend) {
+        finalBackends.computeIfAbsent(backend, k -> new LongAdder()).increment();
+    }
+
+    /** Backend before a transfer and the one probed after it ({@code null} when the probe got no reply). */
+    void routeAfterTransfer(String before, String after) {
+        if (after == null) {
+            routesUnknown.increment();
+        } else if (after.equals(before)) {
+            routesKept.increment();
+        } else {
+            routesChanged.increment();
+            failure("transfer route: " + before + " -> " + after);
+        }
+    }
+
+    String progressLine(Duration elapsed) {
+        return String.format("[%4ds] launched=%d online=%d joined=%d joinFailed=%d hops=%d hopFailed=%d transfers=%d transferFailed=%d",
+                elapsed.toSeconds(), launched.sum(), online.get(), joins.count(), joinFailures.sum(),
+                hops.count(), hopFailures.sum(), transfers.count(), transferFailures.sum());
+    }
+
+    void print(PrintStream out, Duration elapsed) {
+        out.println();
+        out.println("== Load report after " + elapsed.toSeconds() + "s ==");
+        out.println("Bots launched " + launched.sum() + ", joined " + joins.count() + ", join failures " + joinFailures.sum()
+                + ", still online " + online.get());
+        out.println("Login (connect -> login success)        " + logins.summary());
+        out.println("Join  (connect -> first play packet)    " + joins.summary());
+        out.println("Hop   (/server -> play on new backend)  " + hops.summary() + "  failed " + hopFailures.sum());
+        out.println("Transfer (packet -> play on new proxy)  " + transfers.summary() + "  failed " + transferFailures.sum());
+        if (routesKept.sum() + routesChanged.sum() + routesUnknown.sum() > 0) {
+            out.println("Backend after transfer                  kept " + routesKept.sum() + ", changed " + routesChanged.sum()
+                    + ", unknown " + routesUnknown.sum());
+        }
+        printCounts(out, "Initial backend distribution", initialBackends);
+        printCounts(out, "Final backend distribution", finalBackends);
+        printCounts(out, "Failures", failures);
+    }
+
+    private void failure(String reason) {
+        String key = reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) + "..." : reason;
+        failures.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private static void printCounts(PrintStream out, String title, Map<String, LongAdder> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        long total = counts.values().stream().mapToLong(LongAdder::sum).sum();
+        out.println(title + ":");
+        counts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .forEach(e -> out.printf("  %-40s %7d  %5.1f%%%n", e.getKey(), e.getValue().sum(), 100.0 * e.getValue().sum() / total));
+    }
+
+    /** Latency samples in nanoseconds; a run holds one per bot per event, so plain arrays suffice. */
+    static final class Latencies {
+        private long[] samples = new long[1024];
+        private int count;
+
+        synchronized void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized String summary() {
+            if (count == 0) {
+                return "n=0";
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return String.format("n=%d p50=%s p90=%s p99=%s p99.9=%s max=%s", count,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    format(sorted[count - 1]));
+        }
+
+        private static String percentile(long[] sorted, double quantile) {
+            int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+            return format(sorted[Math.max(0, Math.min(sorted.length - 1, rank))]);
+        }
+
+        private static String format(long nanos) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package mc.noobsters.loadgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/** Cursor over one received packet body. Reads past the end throw {@link IOException}. */
+final class PacketIn {
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+
+    PacketIn(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    int remaining() {
+        return end - pos;
+    }
+
+    int readUnsignedByte() throws IOException {
+        need(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    boolean readBoolean() throws IOException {
+        return readUnsignedByte() != 0;
+    }
+
+    int readUnsignedShort() throws IOException {
+        need(2);
+        int value = (buf[pos] & 0xFF) << 8 | buf[pos + 1] & 0xFF;
+        pos += 2;
+        return value;
+    }
+
+    int readInt() throws IOException {
+        need(4);
+        int value = (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16 | (buf[pos + 2] & 0xFF) << 8 | buf[pos + 3] & 0xFF;
+        pos += 4;
+        return value;
+    }
+
+    long readLong() throws IOException {
+        return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+
+    /** Protocol string: VarInt byte length, then UTF-8. */
+    String readString() throws IOException {
+        int length = readVarInt();
+        need(length);
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    /** NBT string: unsigned short byte length, then (modified) UTF-8. */
+    String readShortString() throws IOException {
+        int length = readUnsignedShort();
+        need(length);
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    byte[] readByteArray() throws IOException {
+        int length = readVarInt();
+        need(length);
+        byte[] value = new byte[length];
+        System.arraycopy(buf, pos, value, 0, length);
+        pos += length;
+        return value;
+    }
+
+    void skip(long bytes) throws IOException {
+        if (bytes < 0 || bytes > remaining()) {
+            throw new IOException("Skip of " + bytes + " past end of packet");
+        }
+        pos += (int) bytes;
+    }
+
+    private void need(int bytes) throws IOException {
+        if (bytes < 0 || bytes > end - pos) {
+            throw new IOException("Packet too short");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package mc.noobsters.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/** Growable buffer for one outgoing packet: id first, then fields. */
+final class PacketOut {
+    private byte[] buf = new byte[64];
+    private int size;
+
+    static PacketOut of(int id) {
+        return new PacketOut().writeVarInt(id);
+    }
+
+    PacketOut writeByte(int value) {
+        ensure(1);
+        buf[size++] = (byte) value;
+        return this;
+    }
+
+    PacketOut writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    PacketOut writeShort(int value) {
+        return writeByte(value >>> 8).writeByte(value);
+    }
+
+    PacketOut writeInt(int value) {
+        return writeShort(value >>> 16).writeShort(value);
+    }
+
+    PacketOut writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (value >>> shift));
+        }
+        return this;
+    }
+
+    PacketOut writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        return writeByte(value);
+    }
+
+    PacketOut writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        return writeBytes(bytes, 0, bytes.length);
+    }
+
+    PacketOut writeByteArray(byte[] value) {
+        writeVarInt(value.length);
+        return writeBytes(value, 0, value.length);
+    }
+
+    PacketOut writeUuid(UUID value) {
+        return writeLong(value.getMostSignificantBits()).writeLong(value.getLeastSignificantBits());
+    }
+
+    PacketOut writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, size, length);
+        size += length;
+        return this;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static int varIntSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
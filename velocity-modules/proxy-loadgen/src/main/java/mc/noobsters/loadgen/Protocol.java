@@ -0,0 +1,63 @@
+package mc.noobsters.loadgen;
+
+/**
+ * Packet ids of the Java Edition protocol the bots speak: 1.21.4 (protocol 769), the version the
+ * Paper backends run. Only the packets a headless client must answer, or that the load generator
+ * measures, are listed; everything else is read and dropped.
+ */
+final class Protocol {
+    static final int VERSION_1_21_4 = 769;
+
+    static final int INTENT_LOGIN = 2;
+    static final int INTENT_TRANSFER = 3;
+
+    // Handshake, serverbound.
+    static final int HANDSHAKE = 0x00;
+
+    // Login, clientbound.
+    static final int LOGIN_DISCONNECT = 0x00;
+    static final int LOGIN_ENCRYPTION_REQUEST = 0x01;
+    static final int LOGIN_SUCCESS = 0x02;
+    static final int LOGIN_SET_COMPRESSION = 0x03;
+    static final int LOGIN_PLUGIN_REQUEST = 0x04;
+    static final int LOGIN_COOKIE_REQUEST = 0x05;
+    // Login, serverbound.
+    static final int LOGIN_START = 0x00;
+    static final int LOGIN_PLUGIN_RESPONSE = 0x02;
+    static final int LOGIN_ACKNOWLEDGED = 0x03;
+    static final int LOGIN_COOKIE_RESPONSE = 0x04;
+
+    // Configuration, clientbound.
+    static final int CONFIG_COOKIE_REQUEST = 0x00;
+    static final int CONFIG_DISCONNECT = 0x02;
+    static final int CONFIG_FINISH = 0x03;
+    static final int CONFIG_KEEP_ALIVE = 0x04;
+    static final int CONFIG_PING = 0x05;
+    static final int CONFIG_STORE_COOKIE = 0x0A;
+    static final int CONFIG_TRANSFER = 0x0B;
+    static final int CONFIG_KNOWN_PACKS = 0x0E;
+    // Configuration, serverbound.
+    static final int CONFIG_COOKIE_RESPONSE = 0x01;
+    static final int CONFIG_FINISH_ACKNOWLEDGED = 0x03;
+    static final int CONFIG_KEEP_ALIVE_RESPONSE = 0x04;
+    static final int CONFIG_PONG = 0x05;
+    static final int CONFIG_KNOWN_PACKS_RESPONSE = 0x07;
+
+    // Play, clientbound.
+    static final int PLAY_COOKIE_REQUEST = 0x16;
+    static final int PLAY_DISCONNECT = 0x1D;
+    static final int PLAY_KEEP_ALIVE = 0x27;
+    static final int PLAY_LOGIN = 0x2C;
+    static final int PLAY_START_CONFIGURATION = 0x70;
+    static final int PLAY_STORE_COOKIE = 0x72;
+    static final int PLAY_SYSTEM_CHAT = 0x73;
+    static final int PLAY_TRANSFER = 0x7A;
+    // Play, serverbound.
+    static final int PLAY_CHAT_COMMAND = 0x05;
+    static final int PLAY_CONFIGURATION_ACKNOWLEDGED = 0x0E;
+    static final int PLAY_COOKIE_RESPONSE = 0x13;
+    static final int PLAY_KEEP_ALIVE_RESPONSE = 0x1A;
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,59 @@
+package mc.noobsters.loadgen;
+
+import java.io.IOException;
+
+/**
+ * Plain text of chat components sent as network NBT (1.20.3+): the concatenated {@code text}
+ * values, in order. Styling, click events and untranslated keys are skipped. Velocity renders its
+ * own translatable messages before sending, so its replies come out as readable sentences.
+ */
+final class TextComponents {
+    private static final int END = 0;
+    private static final int STRING = 8;
+    private static final int LIST = 9;
+    private static final int COMPOUND = 10;
+
+    private TextComponents() {
+    }
+
+    static String readNbt(PacketIn in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        payload(in, in.readUnsignedByte(), true, text);
+        return text.toString();
+    }
+
+    private static void payload(PacketIn in, int type, boolean isText, StringBuilder text) throws IOException {
+        switch (type) {
+            case END -> {
+            }
+            case 1 -> in.skip(1);
+            case 2 -> in.skip(2);
+            case 3, 5 -> in.skip(4);
+            case 4, 6 -> in.skip(8);
+            case 7 -> in.skip(in.readInt());
+            case STRING -> {
+                String value = in.readShortString();
+                if (isText) {
+                    text.append(value);
+                }
+            }
+            case LIST -> {
+                int elementType = in.readUnsignedByte();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    // A bare string in "extra" or "with" is a text component of its own.
+                    payload(in, elementType, isText, text);
+                }
+            }
+            case COMPOUND -> {
+                for (int tag = in.readUnsignedByte(); tag != END; tag = in.readUnsignedByte()) {
+                    String name = in.readShortString();
+                    payload(in, tag, isText && (name.equals("text") || name.equals("extra") || name.equals("with")), text);
+                }
+            }
+            case 11 -> in.skip(in.readInt() * 4L);
+            case 12 -> in.skip(in.readInt() * 8L);
+            default -> throw new IOException("Unknown NBT tag " + type);
+        }
+    }
+}
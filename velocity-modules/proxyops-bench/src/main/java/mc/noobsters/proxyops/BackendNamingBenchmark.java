@@ -0,0 +1,77 @@
+package mc.noobsters.proxyops;
+
+import mc.noobsters.proxyops.fake.FakeApiServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-endpoint naming cost. Each invocation names {@code backends} endpoints, i.e. one sync's worth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackendNamingBenchmark {
+    @Param({"10", "1000", "10000"})
+    int backends;
+
+    /** {@code statefulset} ({@code lobby-12}), {@code deployment} ({@code survival-7d9f8c6b5-x4k2p}) or {@code ip} (no targetRef). */
+    @Param({"statefulset", "deployment", "ip"})
+    String shape;
+
+    private String[] podNames;
+    private String[] ips;
+    private String[] uids;
+
+    @Setup
+    public void setup() {
+        podNames = new String[backends];
+        ips = new String[backends];
+        uids = new String[backends];
+        for (int i = 0; i < backends; i++) {
+            podNames[i] = switch (shape) {
+                case "statefulset" -> "lobby-" + i;
+                case "deployment" -> "survival-7d9f8c6b5-" + Integer.toString(0x10000 + i, 36);
+                default -> "";
+            };
+            ips[i] = FakeApiServer.ip(i);
+            uids[i] = "ip".equals(shape) ? "" : UUID.nameUUIDFromBytes(podNames[i].getBytes()).toString();
+        }
+    }
+
+    @Benchmark
+    public void backendName(Blackhole bh) {
+        for (int i = 0; i < podNames.length; i++) {
+            bh.consume(BackendNaming.backendName("lobby", podNames[i], ips[i], uids[i]));
+        }
+    }
+
+    @Benchmark
+    public void parseOrdinal(Blackhole bh) {
+        for (int i = 0; i < podNames.length; i++) {
+            bh.consume(BackendNaming.parseOrdinal(podNames[i]));
+        }
+    }
+
+    @Benchmark
+    public void podHint(Blackhole bh) {
+        for (int i = 0; i < podNames.length; i++) {
+            bh.consume(BackendNaming.podHint(podNames[i], ips[i]));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package mc.noobsters.proxyops;
+
+import com.google.gson.JsonObject;
+import mc.noobsters.proxyops.fake.FakeApiServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster shapes shared by the benchmarks: half lobby StatefulSet pods, the rest split across
+ * two Deployments, roughly like production but scaled to {@code backends} endpoints.
+ */
+final class BenchCluster {
+    static final String NAMESPACE = "minecraft";
+    static final String SELECTOR = FakeApiServer.DISCOVERY_LABEL_KEY + "=" + FakeApiServer.DISCOVERY_LABEL_VALUE;
+    static final String PREFIX = "auto-";
+
+    private BenchCluster() {
+    }
+
+    static void populate(FakeApiServer api, int backends) {
+        int lobby = Math.max(1, backends / 2);
+        int survival = Math.max(1, (backends - lobby) / 2);
+        int creative = Math.max(1, backends - lobby - survival);
+        api.addBackendGroup(NAMESPACE, "lobby", "statefulset", "lobby", 25565, lobby, 0);
+        api.addBackendGroup(NAMESPACE, "survival", "deployment", null, 25565, survival, lobby);
+        api.addBackendGroup(NAMESPACE, "creative", "deployment", null, 25565, creative, lobby + survival);
+    }
+
+    static JsonObject services(FakeApiServer api) {
+        return api.list(NAMESPACE, "services", SELECTOR);
+    }
+
+    static JsonObject endpoints(FakeApiServer api) {
+        return api.list(NAMESPACE, "endpoints", SELECTOR);
+    }
+
+    static List<KubernetesClient.BackendRef> refs(FakeApiServer api) {
+        return KubernetesClient.parseDiscoverableBackends(services(api), endpoints(api), new BackendRefCache());
+    }
+
+    /**
+     * The same backends with every {@code stride}-th one moved to a new address, as after a reschedule.
+     */
+    static List<KubernetesClient.BackendRef> moved(List<KubernetesClient.BackendRef> refs, int stride) {
+        List<KubernetesClient.BackendRef> out = new ArrayList<>(refs.size());
+        for (int i = 0; i < refs.size(); i++) {
+            KubernetesClient.BackendRef r = refs.get(i);
+            out.add(i % stride == 0
+                    ? new KubernetesClient.BackendRef(r.name(), FakeApiServer.ip(0x800000 + i), r.port(), r.readyEndpoints())
+                    : r);
+        }
+        return out;
+    }
+}
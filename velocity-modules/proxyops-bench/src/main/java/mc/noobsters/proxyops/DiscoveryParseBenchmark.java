@@ -0,0 +1,78 @@
+package mc.noobsters.proxyops;
+
+import com.google.gson.JsonObject;
+import mc.noobsters.proxyops.fake.FakeApiServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code listDiscoverableBackends}: JSON-to-BackendRef parsing alone (warm and cold naming cache), and the full round trip
+ * (two list calls plus parsing) against the fake apiserver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscoveryParseBenchmark {
+    @Param({"10", "1000", "10000"})
+    int backends;
+
+    private FakeApiServer api;
+    private KubernetesClient client;
+    private JsonObject services;
+    private JsonObject endpoints;
+    private BackendRefCache warmCache;
+    private BackendRefCache httpCache;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        api = FakeApiServer.start();
+        BenchCluster.populate(api, backends);
+        services = BenchCluster.services(api);
+        endpoints = BenchCluster.endpoints(api);
+        warmCache = new BackendRefCache();
+        KubernetesClient.parseDiscoverableBackends(services, endpoints, warmCache);
+        httpCache = new BackendRefCache();
+        client = KubernetesClient.forApiServer(NOPLogger.NOP_LOGGER, new ProxyOpsMetrics(), api.baseUrl(), "bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        api.close();
+    }
+
+    /** Steady state: every endpoint is already in the naming cache. */
+    @Benchmark
+    public List<KubernetesClient.BackendRef> parse() {
+        return KubernetesClient.parseDiscoverableBackends(services, endpoints, warmCache);
+    }
+
+    /** First sync after startup: every endpoint is named from scratch. */
+    @Benchmark
+    public List<KubernetesClient.BackendRef> parseColdCache() {
+        return KubernetesClient.parseDiscoverableBackends(services, endpoints, new BackendRefCache());
+    }
+
+    @Benchmark
+    public List<KubernetesClient.BackendRef> listOverHttp() {
+        return client.listDiscoverableBackends(BenchCluster.NAMESPACE, BenchCluster.SELECTOR, httpCache);
+    }
+}
@@ -0,0 +1,77 @@
+package mc.noobsters.proxyops;
+
+import mc.noobsters.proxyops.fake.FakeApiServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The diff/apply half of {@code syncDiscoveredServers} (everything except the apiserver calls
+ * and Velocity's own register/unregister).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscoverySyncBenchmark {
+    /** Velocity's view: every managed name is still registered and there are no static servers. */
+    private final Predicate<String> registered = name -> this.servers.manages(name);
+
+    @Param({"10", "1000", "10000"})
+    int backends;
+
+    private List<KubernetesClient.BackendRef> steady;
+    private List<KubernetesClient.BackendRef> churned;
+    private DiscoveredServers servers;
+    private boolean flip;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        try (FakeApiServer api = FakeApiServer.start()) {
+            BenchCluster.populate(api, backends);
+            steady = BenchCluster.refs(api);
+        }
+        // ~1% of backends move between consecutive syncs (at least one).
+        churned = BenchCluster.moved(steady, Math.max(1, Math.min(steady.size(), 100)));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetServers() {
+        servers = new DiscoveredServers(BenchCluster.PREFIX);
+        servers.apply(servers.diff(steady, registered));
+        flip = false;
+    }
+
+    /** Periodic reconcile with nothing changed: the common case. */
+    @Benchmark
+    public DiscoveredServers.Changes steadyState() {
+        DiscoveredServers.Changes changes = servers.diff(steady, registered);
+        servers.apply(changes);
+        return changes;
+    }
+
+    /** Alternates between two views that differ in ~1% of addresses. */
+    @Benchmark
+    public DiscoveredServers.Changes churnOnePercent() {
+        flip = !flip;
+        DiscoveredServers.Changes changes = servers.diff(flip ? churned : steady, registered);
+        servers.apply(changes);
+        return changes;
+    }
+}
@@ -0,0 +1,63 @@
+package mc.noobsters.proxyops;
+
+import mc.noobsters.proxyops.fake.FakeApiServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The discovered-group fallback of {@code resolveDefaultServer}, run on every join whose default
+ * key is not a statically registered server. Four threads to mimic a login burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ResolveDefaultBenchmark {
+    @Param({"10", "1000", "10000"})
+    int backends;
+
+    private DiscoveredServers servers;
+
+    @Setup
+    public void setup() throws IOException {
+        servers = new DiscoveredServers(BenchCluster.PREFIX);
+        try (FakeApiServer api = FakeApiServer.start()) {
+            BenchCluster.populate(api, backends);
+            servers.apply(servers.diff(BenchCluster.refs(api), name -> false));
+        }
+    }
+
+    /** First group in sort order. */
+    @Benchmark
+    public String resolveFirstGroup() {
+        return servers.firstMatching("auto-creative");
+    }
+
+    /** Last group in sort order; the worst case for a linear scan. */
+    @Benchmark
+    public String resolveLastGroup() {
+        return servers.firstMatching("auto-survival");
+    }
+
+    /** Unknown key, which falls through to limbo. */
+    @Benchmark
+    public String resolveMiss() {
+        return servers.firstMatching("auto-event");
+    }
+}
@@ -0,0 +1,602 @@
+package mc.noobsters.proxyops.fake;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the subset of the Kubernetes API that ProxyOps talks to.
+ *
+ * <p>Serves list/get/merge-patch for {@code services}, {@code endpoints}, {@code pods},
+ * {@code configmaps} (core/v1) and {@code deployments}/{@code statefulsets} (apps/v1), with
+ * equality label selectors and {@code ?watch=true} JSON-lines streams. Objects are scripted
+ * from the calling thread with {@link #put}/{@link #delete}; every change bumps the
+ * resourceVersion and is fanned out to matching watches. {@link #failNext} and
+ * {@link #latency} inject apiserver trouble.</p>
+ *
+ * <p>Plain HTTP on loopback only; point {@code KubernetesClient.forApiServer} at {@link #baseUrl()}.</p>
+ */
+public final class FakeApiServer implements AutoCloseable {
+    public static final String DISCOVERY_LABEL_KEY = "mc.noobsters.net/velocity-discovery";
+    public static final String DISCOVERY_LABEL_VALUE = "enabled";
+    public static final String SERVER_NAME_ANNOTATION = "mc.noobsters.net/velocity-server-name";
+
+    private static final long WATCH_POLL_MILLIS = 250;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    /** {@code namespace/resource} -> name -> object; insertion ordered so lists are stable. */
+    private final Map<String, Map<String, JsonObject>> objects = new ConcurrentHashMap<>();
+    private final List<Watch> watches = new CopyOnWriteArrayList<>();
+    private final List<Failure> failures = new CopyOnWriteArrayList<>();
+    private final AtomicLong resourceVersion = new AtomicLong(1);
+    private final LongAdder requests = new LongAdder();
+    private volatile long latencyMillis;
+
+    private FakeApiServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static FakeApiServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        AtomicInteger threads = new AtomicInteger();
+        // Watches hold a thread each for their whole lifetime, so the pool has to be unbounded.
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-apiserver-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        FakeApiServer api = new FakeApiServer(server, executor);
+        server.createContext("/", api::handle);
+        server.start();
+        return api;
+    }
+
+    public String baseUrl() {
+        InetSocketAddress addr = server.getAddress();
+        return "http://" + addr.getHostString() + ":" + addr.getPort();
+    }
+
+    @Override
+    public void close() {
+        for (Watch w : watches) {
+            w.close();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ---- scripting ----
+
+    /**
+     * Creates or replaces an object; emits ADDED or MODIFIED to matching watches.
+     */
+    public void put(String namespace, String resource, JsonObject object) {
+        JsonObject meta = metadata(object);
+        String name = meta.get("name").getAsString();
+        meta.addProperty("namespace", namespace);
+        meta.addProperty("resourceVersion", Long.toString(resourceVersion.incrementAndGet()));
+        if (!meta.has("uid")) {
+            meta.addProperty("uid", UUID.randomUUID().toString());
+        }
+        JsonObject previous = bucket(namespace, resource).put(name, object);
+        emit(namespace, resource, previous == null ? "ADDED" : "MODIFIED", object);
+    }
+
+    public boolean delete(String namespace, String resource, String name) {
+        JsonObject removed = bucket(namespace, resource).remove(name);
+        if (removed == null) {
+            return false;
+        }
+        metadata(removed).addProperty("resourceVersion", Long.toString(resourceVersion.incrementAndGet()));
+        emit(namespace, resource, "DELETED", removed);
+        return true;
+    }
+
+    public JsonObject get(String namespace, String resource, String name) {
+        return bucket(namespace, resource).get(name);
+    }
+
+    /**
+     * The same list body a {@code GET .../resource?labelSelector=...} would return, without HTTP.
+     */
+    public JsonObject list(String namespace, String resource, String labelSelector) {
+        List<Selector> selector = Selector.parse(labelSelector);
+        JsonArray items = new JsonArray();
+        Map<String, JsonObject> bucket = bucket(namespace, resource);
+        synchronized (bucket) {
+            for (JsonObject obj : bucket.values()) {
+                if (Selector.matches(selector, obj)) {
+                    items.add(obj);
+                }
+            }
+        }
+        JsonObject meta = new JsonObject();
+        meta.addProperty("resourceVersion", Long.toString(resourceVersion.get()));
+        JsonObject out = new JsonObject();
+        out.addProperty("kind", "List");
+        out.addProperty("apiVersion", "v1");
+        out.add("metadata", meta);
+        out.add("items", items);
+        return out;
+    }
+
+    /**
+     * Makes the next {@code times} requests whose path starts with {@code pathPrefix} fail with {@code status}.
+     */
+    public void failNext(String pathPrefix, int status, int times) {
+        failures.add(new Failure(pathPrefix, status, new AtomicInteger(times)));
+    }
+
+    public void latency(Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+    /** Sends a BOOKMARK to every open watch. */
+    public void bookmark() {
+        JsonObject meta = new JsonObject();
+        meta.addProperty("resourceVersion", Long.toString(resourceVersion.get()));
+        JsonObject obj = new JsonObject();
+        obj.add("metadata", meta);
+        for (Watch w : watches) {
+            w.offer("BOOKMARK", obj);
+        }
+    }
+
+    /** Ends every open watch stream, the way an apiserver restart or timeout would. */
+    public void dropWatches() {
+        for (Watch w : watches) {
+            w.close();
+        }
+    }
+
+    public int openWatches() {
+        return watches.size();
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    // ---- object builders ----
+
+    /**
+     * Adds a discoverable backend group: a Service (optionally with a server-name annotation),
+     * its Endpoints, one ready Pod per replica and the owning workload. StatefulSet pods are
+     * named {@code <workload>-<ordinal>}, Deployment pods {@code <workload>-<hash>-<suffix>}.
+     */
+    public List<Address> addBackendGroup(String namespace, String workload, String kind, String serverName,
+                                         int port, int replicas, int ipOffset) {
+        Map<String, String> labels = Map.of(DISCOVERY_LABEL_KEY, DISCOVERY_LABEL_VALUE, "app", workload);
+        List<Address> addresses = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++) {
+            String podName = "statefulset".equals(kind)
+                    ? workload + "-" + i
+                    : workload + "-7d9f8c6b5-" + suffix(i);
+            String ip = ip(ipOffset + i);
+            String uid = uid(workload, i);
+            addresses.add(new Address(ip, podName, uid));
+            JsonObject pod = pod(podName, Map.of("app", workload), ip, true);
+            metadata(pod).addProperty("uid", uid);
+            put(namespace, "pods", pod);
+        }
+        put(namespace, "services", service(workload, labels, serverName, port));
+        put(namespace, "endpoints", endpoints(workload, labels, addresses));
+        put(namespace, "statefulset".equals(kind) ? "statefulsets" : "deployments",
+                workload(workload, replicas, replicas));
+        return addresses;
+    }
+
+    public static JsonObject service(String name, Map<String, String> labels, String serverName, int port) {
+        JsonObject meta = meta(name, labels);
+        if (serverName != null) {
+            JsonObject ann = new JsonObject();
+            ann.addProperty(SERVER_NAME_ANNOTATION, serverName);
+            meta.add("annotations", ann);
+        }
+        JsonObject p = new JsonObject();
+        p.addProperty("name", "minecraft");
+        p.addProperty("port", port);
+        p.addProperty("protocol", "TCP");
+        JsonArray ports = new JsonArray();
+        ports.add(p);
+        JsonObject spec = new JsonObject();
+        spec.add("ports", ports);
+        JsonObject svc = new JsonObject();
+        svc.addProperty("kind", "Service");
+        svc.add("metadata", meta);
+        svc.add("spec", spec);
+        return svc;
+    }
+
+    public static JsonObject endpoints(String name, Map<String, String> labels, List<Address> addresses) {
+        JsonArray addrs = new JsonArray();
+        for (Address a : addresses) {
+            JsonObject ref = new JsonObject();
+            ref.addProperty("kind", "Pod");
+            ref.addProperty("name", a.podName());
+            ref.addProperty("uid", a.podUid());
+            JsonObject addr = new JsonObject();
+            addr.addProperty("ip", a.ip());
+            addr.add("targetRef", ref);
+            addrs.add(addr);
+        }
+        JsonObject subset = new JsonObject();
+        subset.add("addresses", addrs);
+        JsonArray subsets = new JsonArray();
+        subsets.add(subset);
+        JsonObject ep = new JsonObject();
+        ep.addProperty("kind", "Endpoints");
+        ep.add("metadata", meta(name, labels));
+        ep.add("subsets", subsets);
+        return ep;
+    }
+
+    public static JsonObject pod(String name, Map<String, String> labels, String ip, boolean ready) {
+        JsonObject cond = new JsonObject();
+        cond.addProperty("type", "Ready");
+        cond.addProperty("status", ready ? "True" : "False");
+        JsonArray conditions = new JsonArray();
+        conditions.add(cond);
+        JsonObject status = new JsonObject();
+        status.addProperty("podIP", ip);
+        status.add("conditions", conditions);
+        JsonObject pod = new JsonObject();
+        pod.addProperty("kind", "Pod");
+        pod.add("metadata", meta(name, labels));
+        pod.add("status", status);
+        return pod;
+    }
+
+    public static JsonObject workload(String name, int desired, int ready) {
+        JsonObject spec = new JsonObject();
+        spec.addProperty("replicas", desired);
+        JsonObject status = new JsonObject();
+        status.addProperty("replicas", desired);
+        status.addProperty("readyReplicas", ready);
+        JsonObject obj = new JsonObject();
+        obj.add("metadata", meta(name, Map.of()));
+        obj.add("spec", spec);
+        obj.add("status", status);
+        return obj;
+    }
+
+    public static JsonObject configMap(String name, Map<String, String> data) {
+        JsonObject d = new JsonObject();
+        data.forEach(d::addProperty);
+        JsonObject cm = new JsonObject();
+        cm.addProperty("kind", "ConfigMap");
+        cm.add("metadata", meta(name, Map.of()));
+        cm.add("data", d);
+        return cm;
+    }
+
+    public static String ip(int n) {
+        return "10." + ((n >> 16) & 0xff) + "." + ((n >> 8) & 0xff) + "." + (n & 0xff);
+    }
+
+    static String uid(String workload, int i) {
+        return UUID.nameUUIDFromBytes((workload + "/" + i).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static String suffix(int i) {
+        String alphabet = "bcdfghjklmnpqrstvwxz2456789";
+        char[] out = new char[5];
+        for (int k = 4; k >= 0; k--) {
+            out[k] = alphabet.charAt(i % alphabet.length());
+            i /= alphabet.length();
+        }
+        return new String(out);
+    }
+
+    private static JsonObject meta(String name, Map<String, String> labels) {
+        JsonObject l = new JsonObject();
+        labels.forEach(l::addProperty);
+        JsonObject meta = new JsonObject();
+        meta.addProperty("name", name);
+        meta.add("labels", l);
+        return meta;
+    }
+
+    // ---- HTTP ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            long delay = latencyMillis;
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            Failure failure = takeFailure(path);
+            if (failure != null) {
+                writeStatus(exchange, failure.status(), "Injected", "injected failure");
+                return;
+            }
+
+            Target target = Target.parse(path);
+            if (target == null) {
+                writeStatus(exchange, 404, "NotFound", "the server could not find the requested resource");
+                return;
+            }
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            if ("GET".equals(method) && target.name() == null) {
+                if ("true".equals(query.get("watch"))) {
+                    serveWatch(exchange, target, query);
+                } else {
+                    writeJson(exchange, 200, list(target.namespace(), target.resource(), query.get("labelSelector")));
+                }
+                return;
+            }
+            if (target.name() == null) {
+                writeStatus(exchange, 405, "MethodNotAllowed", "method not allowed on collection");
+                return;
+            }
+
+            JsonObject current = get(target.namespace(), target.resource(), target.name());
+            if (current == null) {
+                writeStatus(exchange, 404, "NotFound", target.resource() + " \"" + target.name() + "\" not found");
+                return;
+            }
+            if ("GET".equals(method)) {
+                writeJson(exchange, 200, current);
+            } else if ("PATCH".equals(method)) {
+                JsonObject patch;
+                try (InputStreamReader in = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                    patch = JsonParser.parseReader(in).getAsJsonObject();
+                }
+                JsonObject merged = current.deepCopy();
+                mergePatch(merged, patch);
+                put(target.namespace(), target.resource(), merged);
+                writeJson(exchange, 200, merged);
+            } else {
+                writeStatus(exchange, 405, "MethodNotAllowed", "method not allowed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Broken pipes from clients that hang up mid-watch are expected.
+        }
+    }
+
+    private void serveWatch(HttpExchange exchange, Target target, Map<String, String> query) throws IOException, InterruptedException {
+        long timeoutSeconds = query.containsKey("timeoutSeconds") ? Long.parseLong(query.get("timeoutSeconds")) : 1800;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        boolean bookmarks = "true".equals(query.get("allowWatchBookmarks"));
+        Watch watch = new Watch(target.namespace(), target.resource(), Selector.parse(query.get("labelSelector")), bookmarks);
+        watches.add(watch);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.flush();
+            while (!watch.closed && System.nanoTime() < deadline) {
+                String line = watch.queue.poll(WATCH_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    continue;
+                }
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+                out.flush();
+            }
+            out.close();
+        } finally {
+            watches.remove(watch);
+        }
+    }
+
+    private void emit(String namespace, String resource, String type, JsonObject object) {
+        for (Watch w : watches) {
+            if (w.namespace.equals(namespace) && w.resource.equals(resource) && Selector.matches(w.selector, object)) {
+                w.offer(type, object);
+            }
+        }
+    }
+
+    private Failure takeFailure(String path) {
+        for (Failure f : failures) {
+            if (!path.startsWith(f.pathPrefix())) {
+                continue;
+            }
+            int left = f.remaining().getAndDecrement();
+            if (left <= 1) {
+                failures.remove(f);
+            }
+            if (left > 0) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, JsonObject> bucket(String namespace, String resource) {
+        return objects.computeIfAbsent(namespace + "/" + resource, k -> Collections.synchronizedMap(new LinkedHashMap<>()));
+    }
+
+    private static JsonObject metadata(JsonObject object) {
+        JsonObject meta = object.getAsJsonObject("metadata");
+        if (meta == null || !meta.has("name")) {
+            throw new IllegalArgumentException("object has no metadata.name");
+        }
+        return meta;
+    }
+
+    /** RFC 7386 JSON merge patch, which is what the client sends as merge-patch+json. */
+    private static void mergePatch(JsonObject target, JsonObject patch) {
+        for (Map.Entry<String, JsonElement> e : patch.entrySet()) {
+            JsonElement value = e.getValue();
+            if (value.isJsonNull()) {
+                target.remove(e.getKey());
+            } else if (value.isJsonObject() && target.get(e.getKey()) instanceof JsonObject existing) {
+                mergePatch(existing, value.getAsJsonObject());
+            } else {
+                target.add(e.getKey(), value.deepCopy());
+            }
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> out = new LinkedHashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return out;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            out.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static void writeStatus(HttpExchange exchange, int code, String reason, String message) throws IOException {
+        JsonObject status = new JsonObject();
+        status.addProperty("kind", "Status");
+        status.addProperty("apiVersion", "v1");
+        status.addProperty("status", "Failure");
+        status.addProperty("reason", reason);
+        status.addProperty("message", message);
+        status.addProperty("code", code);
+        writeJson(exchange, code, status);
+    }
+
+    private static void writeJson(HttpExchange exchange, int code, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public record Address(String ip, String podName, String podUid) {}
+
+    private record Failure(String pathPrefix, int status, AtomicInteger remaining) {}
+
+    private record Target(String namespace, String resource, String name) {
+        static Target parse(String path) {
+            String[] parts = path.split("/");
+            // /api/v1/namespaces/{ns}/{resource}[/{name}]
+            // /apis/apps/v1/namespaces/{ns}/{resource}[/{name}]
+            int base;
+            if (parts.length >= 6 && "api".equals(parts[1]) && "v1".equals(parts[2])) {
+                base = 3;
+            } else if (parts.length >= 7 && "apis".equals(parts[1]) && "apps".equals(parts[2]) && "v1".equals(parts[3])) {
+                base = 4;
+            } else {
+                return null;
+            }
+            if (!"namespaces".equals(parts[base]) || parts.length > base + 4) {
+                return null;
+            }
+            String name = parts.length == base + 4 ? parts[base + 3] : null;
+            return new Target(parts[base + 1], parts[base + 2], name);
+        }
+    }
+
+    private record Selector(String key, String value, boolean negate) {
+        static List<Selector> parse(String raw) {
+            List<Selector> out = new ArrayList<>();
+            if (raw == null || raw.isBlank()) {
+                return out;
+            }
+            for (String term : raw.split(",")) {
+                term = term.trim();
+                int neq = term.indexOf("!=");
+                if (neq > 0) {
+                    out.add(new Selector(term.substring(0, neq), term.substring(neq + 2), true));
+                    continue;
+                }
+                int eq = term.indexOf('=');
+                if (eq < 0) {
+                    out.add(new Selector(term, null, false));
+                    continue;
+                }
+                int valueStart = term.startsWith("==", eq) ? eq + 2 : eq + 1;
+                out.add(new Selector(term.substring(0, eq), term.substring(valueStart), false));
+            }
+            return out;
+        }
+
+        static boolean matches(List<Selector> selectors, JsonObject object) {
+            if (selectors.isEmpty()) {
+                return true;
+            }
+            JsonObject meta = object.getAsJsonObject("metadata");
+            JsonObject labels = meta == null ? null : meta.getAsJsonObject("labels");
+            for (Selector s : selectors) {
+                JsonElement actual = labels == null ? null : labels.get(s.key());
+                String value = actual == null || actual.isJsonNull() ? null : actual.getAsString();
+                if (s.value() == null) {
+                    if (value == null) {
+                        return false;
+                    }
+                } else if (s.negate() == s.value().equals(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Watch {
+        final String namespace;
+        final String resource;
+        final List<Selector> selector;
+        final boolean bookmarks;
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        volatile boolean closed;
+
+        Watch(String namespace, String resource, List<Selector> selector, boolean bookmarks) {
+            this.namespace = namespace;
+            this.resource = resource;
+            this.selector = selector;
+            this.bookmarks = bookmarks;
+        }
+
+        void offer(String type, JsonObject object) {
+            if ("BOOKMARK".equals(type) && !bookmarks) {
+                return;
+            }
+            JsonObject event = new JsonObject();
+            event.addProperty("type", type);
+            event.add("object", object);
+            queue.add(event.toString());
+        }
+
+        void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package mc.noobsters.proxyops;
+
+/**
+ * Short pod-aware backend names, for example {@code lobby-0-3ed187} or {@code survival-g8z8l-c6d370}.
+ *
+ * <p>Everything here runs per endpoint on every discovery sync, so it scans characters instead of
+ * using regexes or {@code split}. The only allocations are the returned substrings.</p>
+ */
+final class BackendNaming {
+    private static final int DEPLOY_SUFFIX_LENGTH = 5;
+    private static final int UID_TAIL_LENGTH = 6;
+
+    private BackendNaming() {
+    }
+
+    static String backendName(String configuredName, String podName, String ip, String podUid) {
+        String podPart = podHint(podName, ip);
+        if (podUid.isBlank()) {
+            return configuredName + "-" + podPart;
+        }
+        return configuredName + "-" + podPart + "-" + uidTail(podUid);
+    }
+
+    /**
+     * StatefulSet ordinal ({@code lobby-3} -> {@code 3}), Deployment pod suffix
+     * ({@code survival-7d9f8c6b5-g8z8l} -> {@code g8z8l}), else the part after the last dash.
+     * Falls back to the dashed IP when there is no pod name.
+     */
+    static String podHint(String podName, String ip) {
+        if (podName == null || podName.isBlank()) {
+            return ip.replace('.', '-');
+        }
+        int len = podName.length();
+        int digits = trailingDigits(podName);
+        if (digits > 0 && digits < len && podName.charAt(len - digits - 1) == '-') {
+            return podName.substring(len - digits);
+        }
+        if (len > DEPLOY_SUFFIX_LENGTH && podName.charAt(len - DEPLOY_SUFFIX_LENGTH - 1) == '-'
+                && isLowerAlnum(podName, len - DEPLOY_SUFFIX_LENGTH, len)) {
+            return podName.substring(len - DEPLOY_SUFFIX_LENGTH);
+        }
+        int idx = podName.lastIndexOf('-');
+        if (idx > 0 && idx < len - 1) {
+            return podName.substring(idx + 1);
+        }
+        return podName;
+    }
+
+    /**
+     * First six characters of the last dash-separated UID segment (trailing dashes ignored).
+     */
+    static String uidTail(String podUid) {
+        int end = podUid.length();
+        while (end > 0 && podUid.charAt(end - 1) == '-') {
+            end--;
+        }
+        if (end == 0) {
+            return podUid.length() > UID_TAIL_LENGTH ? podUid.substring(0, UID_TAIL_LENGTH) : podUid;
+        }
+        int start = podUid.lastIndexOf('-', end - 1) + 1;
+        return podUid.substring(start, Math.min(end, start + UID_TAIL_LENGTH));
+    }
+
+    /**
+     * Trailing {@code -<digits>} ordinal of a StatefulSet pod name, or {@code -1}.
+     */
+    static int parseOrdinal(String name) {
+        int len = name.length();
+        int digits = trailingDigits(name);
+        if (digits == 0 || digits == len || name.charAt(len - digits - 1) != '-') {
+            return -1;
+        }
+        return parseDigits(name, len - digits, len);
+    }
+
+    /**
+     * Ordinal of a discovered lobby backend ({@code lobby-<ordinal>-...}), or {@code -1}.
+     */
+    static int lobbyOrdinal(String backendName) {
+        if (!backendName.startsWith("lobby-")) {
+            return -1;
+        }
+        int start = "lobby-".length();
+        int end = start;
+        while (end < backendName.length() && isDigit(backendName.charAt(end))) {
+            end++;
+        }
+        if (end == start || end == backendName.length() || backendName.charAt(end) != '-') {
+            return -1;
+        }
+        return parseDigits(backendName, start, end);
+    }
+
+    private static int trailingDigits(String s) {
+        int i = s.length();
+        while (i > 0 && isDigit(s.charAt(i - 1))) {
+            i--;
+        }
+        return s.length() - i;
+    }
+
+    /** Parses ASCII digits in {@code [start, end)}; {@code -1} on int overflow. */
+    private static int parseDigits(String s, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    private static boolean isLowerAlnum(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c) && (c < 'a' || c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
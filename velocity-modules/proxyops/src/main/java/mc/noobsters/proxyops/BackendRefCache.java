@@ -0,0 +1,69 @@
+package mc.noobsters.proxyops;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Derived {@link KubernetesClient.BackendRef}s keyed by pod UID (or IP for endpoints without a
+ * targetRef), so an endpoint that has not changed since the last list maps to the very same
+ * instance. Downstream, {@link DiscoveredServers} uses that identity to skip unchanged backends.
+ *
+ * <p>One list pass is {@link #begin()}, any number of {@link #resolve} calls, then
+ * {@link #sweep()} to forget endpoints that were not seen. Not thread-safe.</p>
+ */
+final class BackendRefCache {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long generation;
+
+    void begin() {
+        generation++;
+    }
+
+    KubernetesClient.BackendRef resolve(String configuredName, String podName, String ip, String podUid, int port) {
+        String key = podUid.isBlank() ? ip : podUid;
+        Entry e = entries.get(key);
+        if (e != null && e.matches(configuredName, podName, ip, port)) {
+            e.seen = generation;
+            return e.ref;
+        }
+        String name = BackendNaming.backendName(configuredName, podName, ip, podUid);
+        KubernetesClient.BackendRef ref = new KubernetesClient.BackendRef(name, ip, port, 1);
+        entries.put(key, new Entry(configuredName, podName, ref, generation));
+        return ref;
+    }
+
+    void sweep() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().seen != generation) {
+                it.remove();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final String configuredName;
+        final String podName;
+        final KubernetesClient.BackendRef ref;
+        long seen;
+
+        Entry(String configuredName, String podName, KubernetesClient.BackendRef ref, long seen) {
+            this.configuredName = configuredName;
+            this.podName = podName;
+            this.ref = ref;
+            this.seen = seen;
+        }
+
+        boolean matches(String configuredName, String podName, String ip, int port) {
+            return ref.port() == port
+                    && ref.host().equals(ip)
+                    && this.configuredName.equals(configuredName)
+                    && this.podName.equals(podName);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package mc.noobsters.proxyops;
+
+import com.velocitypowered.api.proxy.server.ServerInfo;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Backends registered by discovery and the registration diff for the next sync.
+ *
+ * <p>Entries are also indexed by {@link KubernetesClient.BackendRef} identity. Together with
+ * {@link BackendRefCache} that makes an unchanged endpoint one identity-map hit and a generation
+ * stamp: no name concatenation, no {@link ServerInfo}/{@link InetSocketAddress}, no per-sync
+ * collections unless something actually changed.</p>
+ *
+ * <p>{@link #diff} and {@link #apply} must be called under the registration lock, {@code apply} right
+ * after every {@code diff}; {@link #names()}, {@link #first()} and {@link #firstMatching} read an immutable sorted
+ * snapshot and are safe from any thread.</p>
+ */
+final class DiscoveredServers {
+    private final String namePrefix;
+    private final Map<String, Managed> byName = new HashMap<>();
+    private final Map<KubernetesClient.BackendRef, Managed> byRef = new IdentityHashMap<>();
+    private long generation;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    DiscoveredServers(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Registration changes that bring Velocity in line with {@code refs}. {@code registered} tells
+     * whether Velocity currently has a server with the given name: a new name that is already
+     * registered belongs to someone else and is skipped, and a managed name that is no longer
+     * registered (unregistered outside discovery) is registered again.
+     */
+    Changes diff(List<KubernetesClient.BackendRef> refs, Predicate<String> registered) {
+        long gen = ++generation;
+        int kept = 0;
+        List<ServerInfo> register = null;
+        List<ServerInfo> unregister = null;
+        List<Managed> upserts = null;
+        Set<String> pending = null;
+        int added = 0;
+        int updated = 0;
+        int restored = 0;
+        List<String> conflicts = null;
+
+        for (int i = 0; i < refs.size(); i++) {
+            KubernetesClient.BackendRef ref = refs.get(i);
+            if (ref.readyEndpoints() <= 0) {
+                continue;
+            }
+            Managed known = byRef.get(ref);
+            if (known != null) {
+                if (known.seen != gen) {
+                    known.seen = gen;
+                    kept++;
+                    if (!registered.test(known.info.getName())) {
+                        if (register == null) {
+                            register = new ArrayList<>();
+                            upserts = new ArrayList<>();
+                            pending = new HashSet<>();
+                        }
+                        register.add(known.info);
+                        restored++;
+                    }
+                }
+                continue;
+            }
+
+            // New ref instance: a new endpoint or one whose name/address changed.
+            String name = namePrefix + ref.name();
+            if (pending != null && pending.contains(name)) {
+                // Same pod listed in more than one subset.
+                continue;
+            }
+            Managed current = byName.get(name);
+            if (current == null) {
+                if (registered.test(name)) {
+                    // Do not override a static server or another source's backend with the same name.
+                    if (conflicts == null) {
+                        conflicts = new ArrayList<>();
+                    }
+                    conflicts.add(name);
+                    continue;
+                }
+                if (register == null) {
+                    register = new ArrayList<>();
+                    upserts = new ArrayList<>();
+                    pending = new HashSet<>();
+                }
+                ServerInfo info = new ServerInfo(name, InetSocketAddress.createUnresolved(ref.host(), ref.port()));
+                register.add(info);
+                upserts.add(new Managed(info, ref, gen));
+                pending.add(name);
+                added++;
+                continue;
+            }
+            boolean firstSeen = current.seen != gen;
+            if (firstSeen) {
+                current.seen = gen;
+                kept++;
+            }
+            InetSocketAddress old = current.info.getAddress();
+            if (old.getPort() == ref.port() && old.getHostString().equals(ref.host())) {
+                // Same registration, just a fresh ref (e.g. after a cache eviction); re-key it.
+                byRef.remove(current.ref);
+                current.ref = ref;
+                byRef.put(ref, current);
+                if (firstSeen && !registered.test(name)) {
+                    if (register == null) {
+                        register = new ArrayList<>();
+                        upserts = new ArrayList<>();
+                        pending = new HashSet<>();
+                    }
+                    register.add(current.info);
+                    restored++;
+                }
+                continue;
+            }
+            if (register == null) {
+                register = new ArrayList<>();
+                upserts = new ArrayList<>();
+                pending = new HashSet<>();
+            }
+            if (unregister == null) {
+                unregister = new ArrayList<>();
+            }
+            ServerInfo info = new ServerInfo(name, InetSocketAddress.createUnresolved(ref.host(), ref.port()));
+            unregister.add(current.info);
+            register.add(info);
+            upserts.add(new Managed(info, ref, gen));
+            pending.add(name);
+            updated++;
+        }
+
+        int removed = 0;
+        if (kept < byName.size()) {
+            for (Managed m : byName.values()) {
+                if (m.seen != gen) {
+                    if (unregister == null) {
+                        unregister = new ArrayList<>();
+                    }
+                    unregister.add(m.info);
+                    removed++;
+                }
+            }
+        }
+        if (register == null && unregister == null && conflicts == null) {
+            return Changes.NONE;
+        }
+        return new Changes(
+                register == null ? List.of() : register,
+                unregister == null ? List.of() : unregister,
+                added, updated, removed, restored,
+                upserts == null ? List.of() : upserts,
+                conflicts == null ? List.of() : conflicts);
+    }
+
+    void apply(Changes changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (ServerInfo info : changes.unregister()) {
+            Managed m = byName.remove(info.getName());
+            if (m != null) {
+                byRef.remove(m.ref);
+            }
+        }
+        for (Managed m : changes.upserts()) {
+            byName.put(m.info.getName(), m);
+            byRef.put(m.ref, m);
+        }
+        if (changes.added() == 0 && changes.removed() == 0) {
+            // Address updates only: the set of names is unchanged.
+            return;
+        }
+        snapshot = Snapshot.of(merge(snapshot.sorted(), changes.upserts()));
+    }
+
+    /**
+     * Previous sorted names minus the ones no longer managed, merged with the new ones; avoids
+     * re-sorting every name when only a few backends came or went.
+     */
+    private String[] merge(String[] previous, List<Managed> upserts) {
+        List<String> fresh = new ArrayList<>();
+        for (Managed m : upserts) {
+            String name = m.info.getName();
+            if (Arrays.binarySearch(previous, name) < 0) {
+                fresh.add(name);
+            }
+        }
+        fresh.sort(null);
+        String[] out = new String[byName.size()];
+        int n = 0;
+        int f = 0;
+        for (String name : previous) {
+            if (!byName.containsKey(name)) {
+                continue;
+            }
+            while (f < fresh.size() && fresh.get(f).compareTo(name) < 0) {
+                out[n++] = fresh.get(f++);
+            }
+            out[n++] = name;
+        }
+        while (f < fresh.size()) {
+            out[n++] = fresh.get(f++);
+        }
+        return out;
+    }
+
+    /** Whether {@code name} is registered by this instance. Same threading rules as {@link #diff}. */
+    boolean manages(String name) {
+        return byName.containsKey(name);
+    }
+
+    List<String> names() {
+        return snapshot.view();
+    }
+
+    int size() {
+        return snapshot.sorted().length;
+    }
+
+    /** First discovered name in sort order, or {@code null} when there is none. */
+    String first() {
+        String[] sorted = snapshot.sorted();
+        return sorted.length == 0 ? null : sorted[0];
+    }
+
+    /**
+     * First discovered name (in sort order) equal to {@code key} or starting with {@code key-}, or
+     * {@code null}. Binary search over the sorted snapshot; does not allocate.
+     */
+    String firstMatching(String key) {
+        String[] sorted = snapshot.sorted();
+        int i = Arrays.binarySearch(sorted, key);
+        if (i >= 0) {
+            return sorted[i];
+        }
+        // Everything starting with key sorts contiguously from the insertion point; a few names
+        // with a character below '-' after the key may precede the key- block.
+        int len = key.length();
+        for (i = -i - 1; i < sorted.length && sorted[i].startsWith(key); i++) {
+            if (sorted[i].charAt(len) == '-') {
+                return sorted[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code restored} counts managed servers registered again after being unregistered outside
+     * discovery; {@code conflicts} are new names skipped because Velocity already has a server so named.
+     */
+    record Changes(List<ServerInfo> register, List<ServerInfo> unregister, int added, int updated, int removed,
+                   int restored, List<Managed> upserts, List<String> conflicts) {
+        static final Changes NONE = new Changes(List.of(), List.of(), 0, 0, 0, 0, List.of(), List.of());
+
+        boolean isEmpty() {
+            return register.isEmpty() && unregister.isEmpty();
+        }
+    }
+
+    static final class Managed {
+        final ServerInfo info;
+        KubernetesClient.BackendRef ref;
+        long seen;
+
+        Managed(ServerInfo info, KubernetesClient.BackendRef ref, long seen) {
+            this.info = info;
+            this.ref = ref;
+            this.seen = seen;
+        }
+    }
+
+    private record Snapshot(String[] sorted, List<String> view) {
+        static final Snapshot EMPTY = new Snapshot(new String[0], List.of());
+
+        static Snapshot of(String[] sorted) {
+            return new Snapshot(sorted, Collections.unmodifiableList(Arrays.asList(sorted)));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package mc.noobsters.proxyops;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One place discovery looks for backends: services matching {@code selector} in {@code namespace},
+ * registered as {@code namePrefix + backend name}. A non-empty {@code group} is also a routing key
+ * that resolves to any backend of the source.
+ *
+ * <p>Each source owns its naming cache, registrations, list lock, watch stream and sync pacing,
+ * so a slow or noisy namespace only delays its own updates.</p>
+ */
+final class DiscoverySource {
+    final String namespace;
+    final String selector;
+    final String namePrefix;
+    final String group;
+    final long minSyncMillis;
+    final BackendRefCache refs = new BackendRefCache();
+    final DiscoveredServers servers;
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong nextSyncAtMillis = new AtomicLong();
+    private final AtomicBoolean trailingSyncQueued = new AtomicBoolean();
+    private volatile boolean synced;
+    private volatile long lastEventAtMillis;
+    private volatile long lastSyncAtMillis;
+    private volatile Set<String> conflicts = Set.of();
+
+    DiscoverySource(String namespace, String selector, String namePrefix, String group, long minSyncMillis) {
+        this.namespace = namespace;
+        this.selector = selector;
+        this.namePrefix = namePrefix;
+        this.group = group;
+        this.minSyncMillis = minSyncMillis;
+        this.servers = new DiscoveredServers(namePrefix);
+    }
+
+    /** Metric label, thread name and log key; unique among configured sources. */
+    String label() {
+        return namespace + "/" + (group.isEmpty() ? namePrefix : group);
+    }
+
+    /**
+     * Claims the next watch-triggered sync slot: {@code 0} when a sync may start now, otherwise
+     * the millis until the slot opens.
+     */
+    long claimSync(long now) {
+        while (true) {
+            long gate = nextSyncAtMillis.get();
+            if (now < gate) {
+                return gate - now;
+            }
+            if (nextSyncAtMillis.compareAndSet(gate, now + minSyncMillis)) {
+                return 0;
+            }
+        }
+    }
+
+    /** {@code true} for the one caller that should schedule the deferred sync. */
+    boolean queueTrailingSync() {
+        return trailingSyncQueued.compareAndSet(false, true);
+    }
+
+    void trailingSyncDue() {
+        trailingSyncQueued.set(false);
+    }
+
+    void markEvent() {
+        lastEventAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Records the names the last sync skipped because they were already registered elsewhere and
+     * returns the ones that were not skipped before. Called under the registration lock.
+     */
+    List<String> updateConflicts(List<String> skipped) {
+        if (skipped.isEmpty()) {
+            conflicts = Set.of();
+            return List.of();
+        }
+        Set<String> previous = conflicts;
+        List<String> fresh = new ArrayList<>();
+        for (String name : skipped) {
+            if (!previous.contains(name)) {
+                fresh.add(name);
+            }
+        }
+        conflicts = new HashSet<>(skipped);
+        return fresh;
+    }
+
+    int conflictCount() {
+        return conflicts.size();
+    }
+
+    void markSynced() {
+        lastSyncAtMillis = System.currentTimeMillis();
+        synced = true;
+    }
+
+    boolean synced() {
+        return synced;
+    }
+
+    /** Time the newest watch event has been waiting for a sync, {@code 0} when already applied. */
+    long watchLagMillis(long now) {
+        long event = lastEventAtMillis;
+        if (event == 0 || event <= lastSyncAtMillis) {
+            return 0;
+        }
+        return now - event;
+    }
+}
@@ -0,0 +1,156 @@
+package mc.noobsters.proxyops;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The configured {@link DiscoverySource}s and the single routing view merged from them.
+ *
+ * <p>Names from different sources never collide in Velocity (a sync skips names another source
+ * already registered), so the merged view is just the union. {@link #firstMatching} keeps the
+ * single-source rule, the first name in sort order, and does not allocate.</p>
+ */
+final class DiscoverySources {
+    private final List<DiscoverySource> sources;
+
+    DiscoverySources(List<DiscoverySource> sources) {
+        this.sources = List.copyOf(sources);
+    }
+
+    /**
+     * Parses {@code PROXY_DISCOVERY_SOURCES}: entries separated by {@code ;} or newlines, each
+     * {@code namespace|selector[|namePrefix[|group[|minSyncMillis]]]}. Omitted fields take the
+     * given defaults; labels ({@link DiscoverySource#label()}) must be unique. Invalid entries are
+     * reported to {@code invalid} and skipped; {@code null} when no entry is valid.
+     */
+    static DiscoverySources parse(String spec, String defaultPrefix, long defaultMinSyncMillis, Consumer<String> invalid) {
+        List<DiscoverySource> out = new ArrayList<>();
+        Set<String> labels = new HashSet<>();
+        for (String entry : spec.split("[;\n]")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] f = entry.split("\\|", -1);
+            if (f.length < 2 || f.length > 5 || f[0].isBlank() || f[1].isBlank()) {
+                invalid.accept("'" + entry.strip() + "' is not namespace|selector[|namePrefix[|group[|minSyncMillis]]]");
+                continue;
+            }
+            long minSyncMillis = defaultMinSyncMillis;
+            if (f.length > 4 && !f[4].isBlank()) {
+                try {
+                    minSyncMillis = Long.parseLong(f[4].strip());
+                } catch (NumberFormatException e) {
+                    minSyncMillis = -1;
+                }
+                if (minSyncMillis < 0) {
+                    invalid.accept("'" + entry.strip() + "' has an invalid minSyncMillis '" + f[4].strip() + "'");
+                    continue;
+                }
+            }
+            DiscoverySource source = new DiscoverySource(
+                    f[0].strip(),
+                    f[1].strip(),
+                    f.length > 2 ? f[2].strip() : defaultPrefix,
+                    f.length > 3 ? f[3].strip() : "",
+                    minSyncMillis);
+            if (!labels.add(source.label())) {
+                invalid.accept("'" + entry.strip() + "' duplicates source " + source.label() + "; give it its own name prefix or group");
+                continue;
+            }
+            out.add(source);
+        }
+        return out.isEmpty() ? null : new DiscoverySources(out);
+    }
+
+    List<DiscoverySource> all() {
+        return sources;
+    }
+
+    boolean allSynced() {
+        for (DiscoverySource source : sources) {
+            if (!source.synced()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** All discovered names, sorted. */
+    List<String> names() {
+        if (sources.size() == 1) {
+            return sources.get(0).servers.names();
+        }
+        List<String> out = new ArrayList<>();
+        for (DiscoverySource source : sources) {
+            out.addAll(source.servers.names());
+        }
+        out.sort(null);
+        return out;
+    }
+
+    int size() {
+        int n = 0;
+        for (DiscoverySource source : sources) {
+            n += source.servers.size();
+        }
+        return n;
+    }
+
+    Map<String, Integer> sizeBySource() {
+        Map<String, Integer> out = new HashMap<>();
+        for (DiscoverySource source : sources) {
+            out.put(source.label(), source.servers.size());
+        }
+        return out;
+    }
+
+    Map<String, Integer> conflictsBySource() {
+        Map<String, Integer> out = new HashMap<>();
+        for (DiscoverySource source : sources) {
+            out.put(source.label(), source.conflictCount());
+        }
+        return out;
+    }
+
+    /**
+     * First discovered name (in sort order) equal to {@code key} or starting with {@code key-}
+     * across all sources; failing that, the first backend of the first source whose group is
+     * {@code key}. {@code null} when nothing matches.
+     */
+    String firstMatching(String key) {
+        String best = null;
+        for (int i = 0; i < sources.size(); i++) {
+            String match = sources.get(i).servers.firstMatching(key);
+            if (match != null && (best == null || match.compareTo(best) < 0)) {
+                best = match;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            DiscoverySource source = sources.get(i);
+            if (source.group.equals(key)) {
+                String first = source.servers.first();
+                if (first != null) {
+                    return first;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Longest wait of any source's newest watch event for a sync. */
+    long watchLagMillis(long now) {
+        long max = 0;
+        for (DiscoverySource source : sources) {
+            max = Math.max(max, source.watchLagMillis(now));
+        }
+        return max;
+    }
+}
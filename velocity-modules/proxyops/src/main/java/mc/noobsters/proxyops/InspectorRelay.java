@@ -0,0 +1,208 @@
+package mc.noobsters.proxyops;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Proxy half of LobbyInspector's cross-server inspection. Lobbies send each inspector message on
+ * {@code lobbyinspector:relay}, addressed to a player name. When that player is on this proxy the
+ * message goes straight to their backend; otherwise it is published on a Redis channel that every
+ * proxy subscribes to, and the proxy holding the player delivers it.
+ *
+ * <p>One publisher thread drains a bounded queue and pipelines each batch, so messages keep their
+ * order (inspector feeds are sequenced) and a slow Redis never blocks a Velocity event thread. A
+ * full queue drops messages; the inspector's renewals resync the viewer.</p>
+ */
+final class InspectorRelay {
+    static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("lobbyinspector", "relay");
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 256;
+    private static final byte[] PUBLISH = RedisPubSub.bytes("PUBLISH");
+
+    private final ProxyServer proxy;
+    private final Logger logger;
+    private final ProxyOpsMetrics metrics;
+    private final OpsExecutor ops;
+    private final String podName;
+    private final RedisPubSub redis;
+    private final String redisChannel;
+    private final byte[] redisChannelBytes;
+    private final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** {@code redis} may be {@code null}: messages then only reach players on this proxy. */
+    InspectorRelay(ProxyServer proxy, Logger logger, ProxyOpsMetrics metrics, OpsExecutor ops, String podName,
+                   RedisPubSub redis, String redisChannel) {
+        this.proxy = proxy;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.ops = ops;
+        this.podName = podName;
+        this.redis = redis;
+        this.redisChannel = redisChannel;
+        this.redisChannelBytes = RedisPubSub.bytes(redisChannel);
+    }
+
+    void start() {
+        proxy.getChannelRegistrar().register(CHANNEL);
+        if (redis == null) {
+            logger.info("Inspector relay enabled for players on this proxy only (no Redis configured)");
+            return;
+        }
+        ops.run("inspector-relay-publish", this::publishLoop);
+        ops.run("inspector-relay-subscribe", this::subscribeLoop);
+        logger.info("Inspector relay enabled across proxies via Redis {}", redis.describe());
+    }
+
+    @Subscribe
+    public void onPluginMessage(PluginMessageEvent event) {
+        if (!CHANNEL.equals(event.getIdentifier())) {
+            return;
+        }
+        // Never pass relay frames on to the client, whichever side sent them.
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        if (!(event.getSource() instanceof ServerConnection)) {
+            return;
+        }
+        byte[] frame = event.getData();
+        String playerName;
+        int offset;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame))) {
+            playerName = in.readUTF();
+            offset = frame.length - in.available();
+        } catch (IOException e) {
+            metrics.inspectorRelay("malformed");
+            return;
+        }
+        if (deliver(playerName, frame, offset)) {
+            metrics.inspectorRelay("local");
+            return;
+        }
+        if (redis == null) {
+            metrics.inspectorRelay("unknown_player");
+            return;
+        }
+        if (outbound.offer(envelope(frame))) {
+            metrics.inspectorRelay("published");
+        } else {
+            metrics.inspectorRelay("dropped");
+        }
+    }
+
+    /** Hands the message after {@code offset} to {@code playerName}'s backend if they are on this proxy. */
+    private boolean deliver(String playerName, byte[] frame, int offset) {
+        Optional<ServerConnection> server = proxy.getPlayer(playerName).flatMap(Player::getCurrentServer);
+        if (server.isEmpty()) {
+            return false;
+        }
+        byte[] message = new byte[frame.length - offset];
+        System.arraycopy(frame, offset, message, 0, message.length);
+        return server.get().sendPluginMessage(CHANNEL, message);
+    }
+
+    /** Redis payload: origin pod, then the lobby's frame unchanged (player name and message). */
+    private byte[] envelope(byte[] frame) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(frame.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(podName);
+            out.write(frame);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void onPublished(byte[] payload) {
+        String playerName;
+        int offset;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readUTF().equals(podName)) {
+                return;
+            }
+            playerName = in.readUTF();
+            offset = payload.length - in.available();
+        } catch (IOException e) {
+            metrics.inspectorRelay("malformed");
+            return;
+        }
+        // Every proxy receives every message; only the one holding the player delivers it.
+        if (deliver(playerName, payload, offset)) {
+            metrics.inspectorRelay("delivered");
+        }
+    }
+
+    private void publishLoop() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        RedisPubSub.Connection c = null;
+        try {
+            while (!ops.isClosed()) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch, MAX_BATCH - 1);
+                try {
+                    if (c == null) {
+                        c = redis.connect();
+                    }
+                    for (byte[] payload : batch) {
+                        c.command(PUBLISH, redisChannelBytes, payload);
+                    }
+                    c.flush();
+                    for (int i = 0; i < batch.size(); i++) {
+                        c.readReply();
+                    }
+                    batch.clear();
+                } catch (IOException e) {
+                    logger.warn("Inspector relay publish to Redis {} failed: {}", redis.describe(), e.getMessage());
+                    if (c != null) {
+                        c.close();
+                        c = null;
+                    }
+                    // Inspector messages are short-lived; the viewer resyncs after a gap.
+                    metrics.inspectorRelay("dropped", batch.size());
+                    batch.clear();
+                    if (!ops.pause(Duration.ofSeconds(2))) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+    }
+
+    private void subscribeLoop() {
+        while (!ops.isClosed()) {
+            try (RedisPubSub.Connection c = redis.connect()) {
+                c.subscribe(redisChannel, () -> logger.info("Inspector relay subscribed to Redis channel {}", redisChannel), this::onPublished);
+            } catch (IOException e) {
+                if (ops.isClosed()) {
+                    return;
+                }
+                logger.warn("Inspector relay subscription to Redis {} failed: {}", redis.describe(), e.getMessage());
+            }
+            if (!ops.pause(Duration.ofSeconds(2))) {
+                return;
+            }
+        }
+    }
+}
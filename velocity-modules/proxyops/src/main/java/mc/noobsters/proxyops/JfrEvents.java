@@ -0,0 +1,114 @@
+package mc.noobsters.proxyops;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events emitted by ProxyOps.
+ *
+ * <p>Call sites follow the usual {@code begin()/end()/shouldCommit()} pattern and only fill in
+ * string fields after {@code shouldCommit()} returns true, so a disabled event costs a timestamp read.</p>
+ */
+final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    @Name("mc.noobsters.proxyops.KubernetesRequest")
+    @Label("Kubernetes Request")
+    @Category({"ProxyOps", "Kubernetes"})
+    @Description("One HTTP request from KubernetesClient to the apiserver")
+    @StackTrace(false)
+    static final class KubernetesRequest extends Event {
+        @Label("Client Method")
+        String method;
+
+        @Label("Path")
+        String path;
+
+        @Label("Status")
+        @Description("HTTP status code, 0 when the request failed before a response")
+        int status;
+
+        @Label("Response Size")
+        @DataAmount
+        @Description("Response body size, -1 when unknown (streamed watch responses)")
+        long bytes;
+    }
+
+    @Name("mc.noobsters.proxyops.DiscoverySync")
+    @Label("Discovery Sync")
+    @Category({"ProxyOps", "Discovery"})
+    @Description("One syncDiscoveredServers pass, including the apiserver list calls")
+    @StackTrace(false)
+    static final class DiscoverySync extends Event {
+        @Label("Source")
+        @Description("Discovery source label, namespace/group or namespace/prefix")
+        String source;
+
+        @Label("Trigger")
+        String trigger;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        @Label("Backends")
+        int backends;
+
+        @Label("Added")
+        int added;
+
+        @Label("Removed")
+        int removed;
+
+        @Label("Updated")
+        int updated;
+
+        @Label("Restored")
+        @Description("Managed backends registered again after being unregistered outside discovery")
+        int restored;
+    }
+
+    @Name("mc.noobsters.proxyops.DiscoveryLockWait")
+    @Label("Discovery Lock Wait")
+    @Category({"ProxyOps", "Discovery"})
+    @Description("Time spent waiting for a discovery source lock or the shared registration lock")
+    @Threshold("1 ms")
+    static final class DiscoveryLockWait extends Event {
+        @Label("Caller")
+        String caller;
+
+        @Label("Lock")
+        @Description("Source label, or \"registration\" for the lock shared by all sources")
+        String lock;
+    }
+
+    @Name("mc.noobsters.proxyops.InitialServer")
+    @Label("Initial Server Decision")
+    @Category({"ProxyOps", "Routing"})
+    @Description("One onChooseInitialServer decision")
+    @StackTrace(false)
+    static final class InitialServer extends Event {
+        @Label("Player")
+        String player;
+
+        @Label("Default Key")
+        String defaultKey;
+
+        @Label("Chosen Server")
+        String chosen;
+
+        @Label("Kept Existing")
+        @Description("Another plugin had already selected the initial server")
+        boolean keptExisting;
+
+        @Label("Route Cookie")
+        @Description("Transfer route cookie outcome, when the player arrived by transfer")
+        String routeCookie;
+    }
+}
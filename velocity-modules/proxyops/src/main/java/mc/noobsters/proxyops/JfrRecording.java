@@ -0,0 +1,69 @@
+package mc.noobsters.proxyops;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Continuous in-process flight recording that can be dumped on demand around an incident.
+ */
+public class JfrRecording {
+    static final String NAME = "proxyops";
+
+    private final Logger logger;
+    private final Path dumpDir;
+    private Recording recording;
+
+    public JfrRecording(Logger logger, Path dumpDir) {
+        this.logger = logger;
+        this.dumpDir = dumpDir;
+    }
+
+    public synchronized void start(String settings, Duration maxAge, long maxSizeBytes) {
+        if (!FlightRecorder.isAvailable()) {
+            logger.warn("JFR is not available in this JVM; ProxyOps recording disabled");
+            return;
+        }
+        try {
+            Recording r = new Recording(Configuration.getConfiguration(settings));
+            r.setName(NAME);
+            r.setToDisk(true);
+            r.setMaxAge(maxAge);
+            r.setMaxSize(maxSizeBytes);
+            r.start();
+            recording = r;
+            logger.info("ProxyOps JFR recording started (settings={}, maxAge={})", settings, maxAge);
+        } catch (IOException | ParseException | IllegalStateException e) {
+            logger.error("Failed to start ProxyOps JFR recording", e);
+        }
+    }
+
+    /**
+     * Writes the retained window of the continuous recording and returns the file, or {@code null}
+     * when no recording is running.
+     */
+    public synchronized Path dump() throws IOException {
+        Recording r = recording;
+        if (r == null || r.getState() != RecordingState.RUNNING) {
+            return null;
+        }
+        Path out = dumpDir.resolve(NAME + "-" + Instant.now().toString().replace(':', '-') + ".jfr");
+        r.dump(out);
+        return out;
+    }
+
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -27,23 +27,36 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class KubernetesClient {
     private static final String SA_ROOT = "/var/run/secrets/kubernetes.io/serviceaccount";
+    private static final String IN_CLUSTER_API = "https://kubernetes.default.svc";
 
     private final Logger logger;
+    private final ProxyOpsMetrics metrics;
     private final HttpClient http;
+    private final String apiBase;
     private final String bearer;
 
-    private KubernetesClient(Logger logger, HttpClient http, String bearer) {
+    private KubernetesClient(Logger logger, ProxyOpsMetrics metrics, HttpClient http, String apiBase, String bearer) {
         this.logger = logger;
+        this.metrics = metrics;
         this.http = http;
+        this.apiBase = apiBase;
         this.bearer = bearer;
     }
 
-    public static KubernetesClient inCluster(Logger logger) {
+    /**
+     * Client for an explicit apiserver URL (for example the fake apiserver used by proxyops-bench).
+     */
+    public static KubernetesClient forApiServer(Logger logger, ProxyOpsMetrics metrics, String apiBase, String token) {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        return new KubernetesClient(logger, metrics, client, apiBase, token);
+    }
+
+    public static KubernetesClient inCluster(Logger logger, ProxyOpsMetrics metrics) {
         try {
             Path tokenPath = Path.of(SA_ROOT, "token");
             Path caPath = Path.of(SA_ROOT, "ca.crt");
@@ -69,10 +82,10 @@ public class KubernetesClient {
                     .sslContext(ssl)
                     .connectTimeout(Duration.ofSeconds(5))
                     .build();
-            return new KubernetesClient(logger, client, token);
+            return new KubernetesClient(logger, metrics, client, IN_CLUSTER_API, token);
         } catch (Exception e) {
             logger.error("Failed to initialize Kubernetes client", e);
-            return new KubernetesClient(logger, HttpClient.newHttpClient(), "");
+            return new KubernetesClient(logger, metrics, HttpClient.newHttpClient(), IN_CLUSTER_API, "");
         }
     }
 
@@ -84,7 +97,7 @@ public class KubernetesClient {
         try {
             String label = URLEncoder.encode("app=velocity,proxy-id=3", StandardCharsets.UTF_8);
             String path = "/api/v1/namespaces/" + namespace + "/pods?labelSelector=" + label;
-            JsonObject root = get(path);
+            JsonObject root = get("listVelocityPods", path);
             if (root == null) {
                 return out;
             }
@@ -105,53 +118,53 @@ public class KubernetesClient {
         return out;
     }
 
-    public List<BackendRef> listDiscoverableBackends(String namespace, String labelKey, String labelValue) {
-        List<BackendRef> out = new ArrayList<>();
+    /**
+     * Returns one backend per ready endpoint, or {@code null} when the apiserver could not be read
+     * (callers must keep their previous view instead of treating that as "no backends").
+     *
+     * <p>{@code refs} belongs to the caller and must only ever see this namespace and selector:
+     * a pass sweeps every endpoint it did not list. Calls sharing one cache must not overlap.</p>
+     */
+    public List<BackendRef> listDiscoverableBackends(String namespace, String labelSelector, BackendRefCache refs) {
         if (bearer.isBlank()) {
-            return out;
+            return null;
         }
         try {
-            String selector = URLEncoder.encode(labelKey + "=" + labelValue, StandardCharsets.UTF_8);
-            JsonObject svcRoot = get("/api/v1/namespaces/" + namespace + "/services?labelSelector=" + selector);
-            JsonObject epRoot = get("/api/v1/namespaces/" + namespace + "/endpoints?labelSelector=" + selector);
+            String selector = URLEncoder.encode(labelSelector, StandardCharsets.UTF_8);
+            JsonObject svcRoot = get("listDiscoverableBackends", "/api/v1/namespaces/" + namespace + "/services?labelSelector=" + selector);
+            JsonObject epRoot = get("listDiscoverableBackends", "/api/v1/namespaces/" + namespace + "/endpoints?labelSelector=" + selector);
             if (svcRoot == null || epRoot == null) {
-                return out;
+                return null;
             }
+            return parseDiscoverableBackends(svcRoot, epRoot, refs);
+        } catch (Exception e) {
+            logger.error("Failed to list discoverable backends in {} ({})", namespace, labelSelector, e);
+            return null;
+        }
+    }
 
-            Map<String, List<EndpointRef>> endpointsByService = new HashMap<>();
-            JsonArray epItems = epRoot.getAsJsonArray("items");
-            if (epItems != null) {
-                for (JsonElement item : epItems) {
-                    JsonObject ep = item.getAsJsonObject();
-                    String name = str(ep, "metadata", "name");
-                    List<EndpointRef> refs = new ArrayList<>();
-                    JsonArray subsets = ep.getAsJsonArray("subsets");
-                    if (subsets != null) {
-                        for (JsonElement subsetE : subsets) {
-                            JsonObject subset = subsetE.getAsJsonObject();
-                            JsonArray addrs = subset.getAsJsonArray("addresses");
-                            if (addrs != null) {
-                                for (JsonElement addrE : addrs) {
-                                    JsonObject addr = addrE.getAsJsonObject();
-                                    String ip = str(addr, "ip");
-                                    if (ip.isBlank()) {
-                                        continue;
-                                    }
-                                    String podName = str(addr, "targetRef", "name");
-                                    String podUid = str(addr, "targetRef", "uid");
-                                    refs.add(new EndpointRef(ip, podName, podUid));
-                                }
-                            }
-                        }
-                    }
-                    endpointsByService.put(name, refs);
-                }
+    /**
+     * Endpoints that are unchanged since the previous call come back as the same {@link BackendRef} instances.
+     */
+    static List<BackendRef> parseDiscoverableBackends(JsonObject svcRoot, JsonObject epRoot, BackendRefCache cache) {
+        JsonArray svcItems = svcRoot.getAsJsonArray("items");
+        JsonArray epItems = epRoot.getAsJsonArray("items");
+        if (svcItems == null || epItems == null) {
+            return new ArrayList<>();
+        }
+        Map<String, JsonArray> subsetsByService = new HashMap<>();
+        for (JsonElement item : epItems) {
+            JsonObject ep = item.getAsJsonObject();
+            JsonArray subsets = ep.getAsJsonArray("subsets");
+            if (subsets != null) {
+                subsetsByService.put(str(ep, "metadata", "name"), subsets);
             }
+        }
 
-            JsonArray svcItems = svcRoot.getAsJsonArray("items");
-            if (svcItems == null) {
-                return out;
-            }
+        List<BackendRef> out;
+        synchronized (cache) {
+            out = new ArrayList<>(Math.max(16, cache.size()));
+            cache.begin();
             for (JsonElement item : svcItems) {
                 JsonObject svc = item.getAsJsonObject();
                 String svcName = str(svc, "metadata", "name");
@@ -182,25 +195,32 @@ public class KubernetesClient {
                 if (port == 0) {
                     continue;
                 }
-
-                List<EndpointRef> refs = endpointsByService.getOrDefault(svcName, List.of());
-                for (EndpointRef ref : refs) {
-                    String podPart = podHint(ref.podName(), ref.ip());
-                    String uidPart = "";
-                    if (!ref.podUid().isBlank()) {
-                        String[] parts = ref.podUid().split("-");
-                        String tail = parts.length == 0 ? ref.podUid() : parts[parts.length - 1];
-                        if (tail.length() > 6) {
-                            tail = tail.substring(0, 6);
+                JsonArray subsets = subsetsByService.get(svcName);
+                if (subsets == null) {
+                    continue;
+                }
+                // Per-endpoint loop: indexed access and single-key lookups keep it allocation-free
+                // for endpoints the cache already knows.
+                for (int i = 0; i < subsets.size(); i++) {
+                    JsonArray addrs = subsets.get(i).getAsJsonObject().getAsJsonArray("addresses");
+                    if (addrs == null) {
+                        continue;
+                    }
+                    for (int j = 0; j < addrs.size(); j++) {
+                        JsonObject addr = addrs.get(j).getAsJsonObject();
+                        String ip = field(addr, "ip");
+                        if (ip.isBlank()) {
+                            continue;
                         }
-                        uidPart = "-" + tail;
+                        JsonElement targetRef = addr.get("targetRef");
+                        JsonObject target = targetRef != null && targetRef.isJsonObject() ? targetRef.getAsJsonObject() : null;
+                        String podName = field(target, "name");
+                        String podUid = field(target, "uid");
+                        out.add(cache.resolve(configuredName, podName, ip, podUid, port));
                     }
-                    String backendName = configuredName + "-" + podPart + uidPart;
-                    out.add(new BackendRef(backendName, ref.ip(), port, 1));
                 }
             }
-        } catch (Exception e) {
-            logger.error("Failed to list discoverable backends", e);
+            cache.sweep();
         }
         return out;
     }
@@ -217,13 +237,13 @@ public class KubernetesClient {
             String path = "/apis/apps/v1/namespaces/" + namespace + "/" + resource + "/" + workloadName;
             String body = "{\"spec\":{\"template\":{\"metadata\":{\"annotations\":{\"kubectl.kubernetes.io/restartedAt\":\""
                     + timestamp + "\"}}}}}";
-            HttpRequest req = HttpRequest.newBuilder(URI.create("https://kubernetes.default.svc" + path))
+            HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
                     .timeout(Duration.ofSeconds(5))
                     .header("Authorization", "Bearer " + bearer)
                     .header("Content-Type", "application/strategic-merge-patch+json")
                     .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
                     .build();
-            HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> res = send("restartWorkload", req, HttpResponse.BodyHandlers.ofString());
             if (res.statusCode() >= 200 && res.statusCode() < 300) {
                 return true;
             }
@@ -246,13 +266,13 @@ public class KubernetesClient {
             }
             String path = "/apis/apps/v1/namespaces/" + namespace + "/" + resource + "/" + workloadName;
             String body = "{\"spec\":{\"replicas\":" + replicas + "}}";
-            HttpRequest req = HttpRequest.newBuilder(URI.create("https://kubernetes.default.svc" + path))
+            HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
                     .timeout(Duration.ofSeconds(5))
                     .header("Authorization", "Bearer " + bearer)
                     .header("Content-Type", "application/strategic-merge-patch+json")
                     .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
                     .build();
-            HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> res = send("scaleWorkload", req, HttpResponse.BodyHandlers.ofString());
             if (res.statusCode() >= 200 && res.statusCode() < 300) {
                 return true;
             }
@@ -274,7 +294,7 @@ public class KubernetesClient {
                 resource = "statefulsets";
             }
             String path = "/apis/apps/v1/namespaces/" + namespace + "/" + resource + "/" + workloadName;
-            JsonObject root = get(path);
+            JsonObject root = get("getWorkloadStatus", path);
             if (root == null) {
                 return null;
             }
@@ -289,34 +309,35 @@ public class KubernetesClient {
 
     public boolean watchDiscoverableEndpointEvents(
             String namespace,
-            String labelKey,
-            String labelValue,
+            String labelSelector,
+            Runnable onOpen,
             Runnable onEvent
     ) {
         if (bearer.isBlank()) {
             return false;
         }
         try {
-            String selector = URLEncoder.encode(labelKey + "=" + labelValue, StandardCharsets.UTF_8);
+            String selector = URLEncoder.encode(labelSelector, StandardCharsets.UTF_8);
             String path = "/api/v1/namespaces/" + namespace
                     + "/endpoints?labelSelector=" + selector
                     + "&watch=true&allowWatchBookmarks=true&timeoutSeconds=300";
 
-            HttpRequest req = HttpRequest.newBuilder(URI.create("https://kubernetes.default.svc" + path))
+            HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
                     .timeout(Duration.ofSeconds(310))
                     .header("Authorization", "Bearer " + bearer)
                     .GET()
                     .build();
-            HttpResponse<java.io.InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+            HttpResponse<java.io.InputStream> res = send("watchDiscoverableEndpointEvents", req, HttpResponse.BodyHandlers.ofInputStream());
             if (res.statusCode() < 200 || res.statusCode() >= 300) {
                 String body = "";
                 try {
                     body = new String(res.body().readAllBytes(), StandardCharsets.UTF_8);
                 } catch (Exception ignored) {
                 }
-                logger.error("Kubernetes endpoint watch failed: {} {}", res.statusCode(), body);
+                logger.error("Kubernetes endpoint watch in {} failed: {} {}", namespace, res.statusCode(), body);
                 return false;
             }
+            onOpen.run();
 
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(res.body(), StandardCharsets.UTF_8))) {
                 String line;
@@ -326,6 +347,7 @@ public class KubernetesClient {
                     }
                     JsonObject obj = JsonParser.parseString(line).getAsJsonObject();
                     String type = obj.has("type") ? obj.get("type").getAsString() : "";
+                    metrics.watchEvent(type);
                     if ("BOOKMARK".equalsIgnoreCase(type)) {
                         continue;
                     }
@@ -334,27 +356,55 @@ public class KubernetesClient {
             }
             return true;
         } catch (Exception e) {
-            logger.warn("Discoverable endpoint watch loop ended: {}", e.toString());
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                // Cancelled on shutdown; keep the interrupt for the caller.
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            logger.warn("Discoverable endpoint watch in {} ended: {}", namespace, e.toString());
             return false;
         }
     }
 
     public String getConfigMapKey(String namespace, String configMapName, String key) {
+        Map<String, String> data = getConfigMapData(namespace, configMapName);
+        return data == null ? null : data.get(key);
+    }
+
+    /**
+     * Returns the ConfigMap data, an empty map when the ConfigMap does not exist,
+     * or {@code null} when the apiserver could not be read.
+     */
+    public Map<String, String> getConfigMapData(String namespace, String configMapName) {
         if (bearer.isBlank()) {
             return null;
         }
         try {
-            JsonObject root = get("/api/v1/namespaces/" + namespace + "/configmaps/" + configMapName);
-            if (root == null) {
+            String path = "/api/v1/namespaces/" + namespace + "/configmaps/" + configMapName;
+            HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Authorization", "Bearer " + bearer)
+                    .GET()
+                    .build();
+            HttpResponse<String> res = send("getConfigMapData", req, HttpResponse.BodyHandlers.ofString());
+            if (res.statusCode() == 404) {
+                return Map.of();
+            }
+            if (res.statusCode() < 200 || res.statusCode() >= 300) {
+                logger.error("Kubernetes API GET failed: {} {}", res.statusCode(), res.body());
                 return null;
             }
+            JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
+            Map<String, String> out = new HashMap<>();
             JsonObject data = root.getAsJsonObject("data");
-            if (data == null || !data.has(key)) {
-                return null;
+            if (data != null) {
+                for (Map.Entry<String, JsonElement> e : data.entrySet()) {
+                    out.put(e.getKey(), e.getValue().getAsString());
+                }
             }
-            return data.get(key).getAsString();
+            return out;
         } catch (Exception e) {
-            logger.error("Failed to get configmap key {} from {}", key, configMapName, e);
+            logger.error("Failed to get configmap {}", configMapName, e);
             return null;
         }
     }
@@ -367,13 +417,13 @@ public class KubernetesClient {
             String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"");
             String body = "{\"data\":{\"" + key + "\":\"" + escaped + "\"}}";
             String path = "/api/v1/namespaces/" + namespace + "/configmaps/" + configMapName;
-            HttpRequest req = HttpRequest.newBuilder(URI.create("https://kubernetes.default.svc" + path))
+            HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
                     .timeout(Duration.ofSeconds(5))
                     .header("Authorization", "Bearer " + bearer)
                     .header("Content-Type", "application/merge-patch+json")
                     .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
                     .build();
-            HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> res = send("patchConfigMapKey", req, HttpResponse.BodyHandlers.ofString());
             if (res.statusCode() >= 200 && res.statusCode() < 300) {
                 return true;
             }
@@ -385,13 +435,66 @@ public class KubernetesClient {
         }
     }
 
-    private JsonObject get(String path) throws IOException, InterruptedException {
-        HttpRequest req = HttpRequest.newBuilder(URI.create("https://kubernetes.default.svc" + path))
+    private <T> HttpResponse<T> send(String method, HttpRequest req, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        JfrEvents.KubernetesRequest event = new JfrEvents.KubernetesRequest();
+        event.begin();
+        long start = System.nanoTime();
+        int status = 0;
+        HttpResponse<T> res = null;
+        try {
+            res = http.send(req, handler);
+            status = res.statusCode();
+            return res;
+        } finally {
+            metrics.kubernetesRequest(method, status, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.path = req.uri().getRawPath();
+                event.status = status;
+                event.bytes = responseBytes(res);
+                event.commit();
+            }
+        }
+    }
+
+    private static long responseBytes(HttpResponse<?> res) {
+        if (res == null) {
+            return -1;
+        }
+        if (res.body() instanceof String body) {
+            return utf8Length(body);
+        }
+        return res.headers().firstValueAsLong("content-length").orElse(-1);
+    }
+
+    /** UTF-8 size of a decoded body, without encoding it again; {@code length()} counts UTF-16 chars. */
+    private static long utf8Length(String s) {
+        long bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private JsonObject get(String method, String path) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(apiBase + path))
                 .timeout(Duration.ofSeconds(5))
                 .header("Authorization", "Bearer " + bearer)
                 .GET()
                 .build();
-        HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> res = send(method, req, HttpResponse.BodyHandlers.ofString());
         if (res.statusCode() < 200 || res.statusCode() >= 300) {
             logger.error("Kubernetes API GET failed: {} {}", res.statusCode(), res.body());
             return null;
@@ -429,6 +532,17 @@ public class KubernetesClient {
         return e.getAsString();
     }
 
+    private static String field(JsonObject obj, String key) {
+        if (obj == null) {
+            return "";
+        }
+        JsonElement e = obj.get(key);
+        if (e == null || e.isJsonNull()) {
+            return "";
+        }
+        return e.getAsString();
+    }
+
     private static JsonArray nested(JsonObject obj, String parent, String child) {
         JsonElement p = obj.get(parent);
         if (p == null || !p.isJsonObject()) {
@@ -459,27 +573,7 @@ public class KubernetesClient {
         }
     }
 
-    private static String podHint(String podName, String ip) {
-        if (podName == null || podName.isBlank()) {
-            return ip.replace('.', '-');
-        }
-        Matcher ordinal = Pattern.compile(".*-(\\d+)$").matcher(podName);
-        if (ordinal.matches()) {
-            return ordinal.group(1);
-        }
-        Matcher deploySuffix = Pattern.compile(".*-([a-z0-9]{5})$").matcher(podName);
-        if (deploySuffix.matches()) {
-            return deploySuffix.group(1);
-        }
-        int idx = podName.lastIndexOf('-');
-        if (idx > 0 && idx < podName.length() - 1) {
-            return podName.substring(idx + 1);
-        }
-        return podName;
-    }
-
     public record PodRef(String name, String podIp, boolean ready) {}
     public record BackendRef(String name, String host, int port, int readyEndpoints) {}
     public record WorkloadStatus(String workloadName, String workloadKind, int desiredReplicas, int readyReplicas) {}
-    private record EndpointRef(String ip, String podName, String podUid) {}
 }
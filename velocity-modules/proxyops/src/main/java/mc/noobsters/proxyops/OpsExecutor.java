@@ -0,0 +1,118 @@
+package mc.noobsters.proxyops;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Owner of every thread ProxyOps starts: Kubernetes calls, the endpoint watch, the reconcile loop,
+ * command work and probe requests each run on their own virtual thread, so a blocked apiserver
+ * call parks cheaply instead of holding a Velocity scheduler or command thread.
+ *
+ * <p>{@link #close()} cancels everything at once: new work is refused, running tasks are
+ * interrupted (which also aborts in-flight HTTP requests and watch streams), and loops started
+ * with {@link #repeat} or checking {@link #isClosed()} exit.</p>
+ */
+final class OpsExecutor implements Executor, AutoCloseable {
+    private static final long CLOSE_WAIT_SECONDS = 5;
+
+    private final Logger logger;
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("proxyops-", 0).factory());
+    private volatile boolean closed;
+
+    OpsExecutor(Logger logger) {
+        this.logger = logger;
+    }
+
+    /** Runs {@code task} on its own virtual thread; ignored once closed. */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            threads.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed: the plugin is shutting down.
+        }
+    }
+
+    /** Runs {@code task} named {@code name}; failures are logged. */
+    void run(String name, Runnable task) {
+        supply(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /** Result of {@code task} run on a virtual thread; cancelled if the executor is already closed. */
+    <T> CompletableFuture<T> supply(String name, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            threads.execute(() -> {
+                Thread.currentThread().setName("proxyops-" + name);
+                try {
+                    result.complete(task.get());
+                } catch (RuntimeException | Error e) {
+                    if (!closed) {
+                        logger.warn("ProxyOps task {} failed", name, e);
+                    }
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.cancel(false);
+        }
+        return result;
+    }
+
+    /** Runs {@code task} now and again {@code period} after each run ends, until closed. */
+    void repeat(String name, Duration period, Runnable task) {
+        run(name, () -> {
+            while (!closed) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    if (!closed) {
+                        logger.warn("ProxyOps task {} failed", name, e);
+                    }
+                }
+                if (!pause(period)) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /** Sleeps the calling task; {@code false} when the executor closed meanwhile. */
+    boolean pause(Duration duration) {
+        try {
+            Thread.sleep(duration);
+            return !closed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        threads.shutdownNow();
+        try {
+            if (!threads.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("ProxyOps tasks still running {}s after shutdown", CLOSE_WAIT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package mc.noobsters.proxyops;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Small plain-HTTP listener for kubelet probes and the load balancer health check. Requests are
+ * handled on the caller's executor (one virtual thread each in the plugin).
+ */
+public class OpsHttpServer {
+    private final Logger logger;
+    private final HttpServer server;
+
+    private OpsHttpServer(Logger logger, HttpServer server) {
+        this.logger = logger;
+        this.server = server;
+    }
+
+    public static OpsHttpServer start(Logger logger, int port, Executor executor) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 16);
+        server.setExecutor(executor);
+        server.start();
+        return new OpsHttpServer(logger, server);
+    }
+
+    public void route(String path, Supplier<Response> handler) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                    write(exchange, new Response(405, "text/plain", "method not allowed\n"));
+                    return;
+                }
+                write(exchange, handler.get());
+            } catch (Exception e) {
+                logger.warn("Ops HTTP handler for {} failed: {}", path, e.toString());
+            }
+        });
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private static void write(HttpExchange exchange, Response res) throws IOException {
+        byte[] body = res.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", res.contentType());
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(res.status(), -1);
+            return;
+        }
+        exchange.sendResponseHeaders(res.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public record Response(int status, String contentType, String body) {
+        static Response json(int status, String body) {
+            return new Response(status, "application/json", body + "\n");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package mc.noobsters.proxyops;
+
+import com.google.gson.JsonObject;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Readiness/liveness bookkeeping for the local probe endpoint.
+ *
+ * <p>All timestamps are wall-clock millis and {@code 0} means "never happened".
+ * Writers are the reconcile task and the endpoint watch threads (one per discovery source);
+ * readers are probe requests.</p>
+ */
+public class ProxyHealth {
+    private final boolean discoveryRequired;
+    private final int watchStreams;
+    private final Path drainMarker;
+    private final long livenessStaleMillis;
+    private final LongUnaryOperator watchLag;
+
+    private volatile long startedAtMillis = System.currentTimeMillis();
+    private volatile long lastSyncAtMillis;
+    private volatile long lastConfigReadAtMillis;
+    private volatile long lastReconcileAtMillis;
+    private volatile long lastWatchEventAtMillis;
+    private final AtomicInteger watchesOpen = new AtomicInteger();
+    private final AtomicInteger watchReconnects = new AtomicInteger();
+
+    /**
+     * @param watchStreams endpoint watch streams expected to stay open, {@code 0} when watching is off
+     * @param watchLag     longest time any watch event has been waiting for a sync, given the current time
+     */
+    public ProxyHealth(boolean discoveryRequired, int watchStreams, Path drainMarker, long livenessStaleMillis,
+                       LongUnaryOperator watchLag) {
+        this.discoveryRequired = discoveryRequired;
+        this.watchStreams = watchStreams;
+        this.drainMarker = drainMarker;
+        this.livenessStaleMillis = livenessStaleMillis;
+        this.watchLag = watchLag;
+    }
+
+    public void markSync() {
+        lastSyncAtMillis = System.currentTimeMillis();
+    }
+
+    public void markConfigRead() {
+        lastConfigReadAtMillis = System.currentTimeMillis();
+    }
+
+    public void markReconcile() {
+        lastReconcileAtMillis = System.currentTimeMillis();
+    }
+
+    /** One watch stream opened; {@code reconnect} when that stream had been open before. */
+    public void markWatchOpen(boolean reconnect) {
+        if (reconnect) {
+            watchReconnects.incrementAndGet();
+        }
+        watchesOpen.incrementAndGet();
+    }
+
+    /** A stream reported by {@link #markWatchOpen} ended. */
+    public void markWatchClosed() {
+        watchesOpen.decrementAndGet();
+    }
+
+    public void markWatchEvent() {
+        lastWatchEventAtMillis = System.currentTimeMillis();
+    }
+
+    public boolean draining() {
+        return drainMarker != null && Files.exists(drainMarker);
+    }
+
+    public boolean warm() {
+        if (lastConfigReadAtMillis == 0) {
+            return false;
+        }
+        return !discoveryRequired || lastSyncAtMillis != 0;
+    }
+
+    public boolean ready() {
+        return warm() && !draining();
+    }
+
+    public boolean alive() {
+        long reconcile = lastReconcileAtMillis;
+        long since = reconcile == 0 ? startedAtMillis : reconcile;
+        return System.currentTimeMillis() - since <= livenessStaleMillis;
+    }
+
+    /**
+     * Time an endpoint change has been waiting for a sync, {@code 0} when the last sync already covers it.
+     */
+    public long watchLagMillis(long now) {
+        return watchLag.applyAsLong(now);
+    }
+
+    public JsonObject toJson() {
+        long now = System.currentTimeMillis();
+        JsonObject out = new JsonObject();
+        out.addProperty("ready", ready());
+        out.addProperty("alive", alive());
+        out.addProperty("warm", warm());
+        out.addProperty("draining", draining());
+        out.addProperty("discoveryRequired", discoveryRequired);
+        out.addProperty("lastSyncAgeMs", age(now, lastSyncAtMillis));
+        out.addProperty("lastConfigReadAgeMs", age(now, lastConfigReadAtMillis));
+        out.addProperty("lastReconcileAgeMs", age(now, lastReconcileAtMillis));
+        if (watchStreams > 0) {
+            int open = watchesOpen.get();
+            out.addProperty("watchConnected", open >= watchStreams);
+            out.addProperty("watchStreams", watchStreams);
+            out.addProperty("watchStreamsOpen", open);
+            out.addProperty("watchReconnects", watchReconnects.get());
+            out.addProperty("watchLagMs", watchLagMillis(now));
+            out.addProperty("lastWatchEventAgeMs", age(now, lastWatchEventAtMillis));
+        }
+        return out;
+    }
+
+    private static long age(long now, long at) {
+        return at == 0 ? -1 : now - at;
+    }
+}
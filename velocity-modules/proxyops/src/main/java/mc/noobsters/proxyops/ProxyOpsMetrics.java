@@ -0,0 +1,287 @@
+package mc.noobsters.proxyops;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Prometheus text-format metrics for ProxyOps.
+ *
+ * <p>Recording only touches {@link LongAdder}s (striped, contention-free) and map lookups on
+ * label values that already exist, so the join path does not allocate once a backend has been
+ * seen. All string building happens on scrape.</p>
+ */
+public class ProxyOpsMetrics {
+    static final double[] API_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    static final double[] SYNC_BUCKETS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 1};
+    static final double[] SELECT_BUCKETS = {0.000001, 0.0000025, 0.000005, 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.001, 0.01};
+    static final double[] SCALE_BUCKETS = {5, 10, 20, 30, 60, 120, 300, 600};
+
+    private static final Function<String, LongAdder> NEW_ADDER = k -> new LongAdder();
+    private static final Function<Integer, Histogram> NEW_API_HISTOGRAM = k -> new Histogram(API_BUCKETS);
+    private static final Function<String, Map<Integer, Histogram>> NEW_CODE_MAP = k -> new ConcurrentHashMap<>();
+
+    private final Map<String, Map<Integer, Histogram>> kubernetesRequests = new ConcurrentHashMap<>();
+    private final LongAdder watchReconnects = new LongAdder();
+    private final Map<String, LongAdder> watchEvents = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> watchSyncs = new ConcurrentHashMap<>();
+    private final Histogram syncDuration = new Histogram(SYNC_BUCKETS);
+    private final LongAdder syncFailures = new LongAdder();
+    private final LongAdder syncAdded = new LongAdder();
+    private final LongAdder syncRemoved = new LongAdder();
+    private final LongAdder syncUpdated = new LongAdder();
+    private final LongAdder syncRestored = new LongAdder();
+    private final Histogram initialSelection = new Histogram(SELECT_BUCKETS);
+    private final Map<String, LongAdder> chosenBackends = new ConcurrentHashMap<>();
+    private final LongAdder chosenNone = new LongAdder();
+    private final Map<String, LongAdder> routeCookies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> inspectorRelay = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> scaleRequests = new ConcurrentHashMap<>();
+    private final Histogram scaleCompletion = new Histogram(SCALE_BUCKETS);
+    private final List<Gauge> gauges = new ArrayList<>();
+
+    public void kubernetesRequest(String method, int statusCode, long nanos) {
+        kubernetesRequests.computeIfAbsent(method, NEW_CODE_MAP)
+                .computeIfAbsent(statusCode, NEW_API_HISTOGRAM)
+                .observeNanos(nanos);
+    }
+
+    public void watchReconnect() {
+        watchReconnects.increment();
+    }
+
+    public void watchEvent(String type) {
+        counter(watchEvents, type.isEmpty() ? "UNKNOWN" : type).increment();
+    }
+
+    /**
+     * A watch event on {@code source} either started a sync ({@code immediate}), scheduled one for
+     * the end of the source's rate window ({@code deferred}), or joined one already scheduled
+     * ({@code coalesced}).
+     */
+    public void watchSync(String source, String outcome) {
+        counter(watchSyncs, source + "\u0000" + outcome).increment();
+    }
+
+    public void syncCompleted(long nanos, int added, int removed, int updated, int restored) {
+        syncDuration.observeNanos(nanos);
+        syncAdded.add(added);
+        syncRemoved.add(removed);
+        syncUpdated.add(updated);
+        syncRestored.add(restored);
+    }
+
+    public void syncFailed() {
+        syncFailures.increment();
+    }
+
+    public void initialServerChosen(String backend, long nanos) {
+        initialSelection.observeNanos(nanos);
+        if (backend == null) {
+            chosenNone.increment();
+        } else {
+            counter(chosenBackends, backend).increment();
+        }
+    }
+
+    /**
+     * Drops per-backend series for {@code backend} once discovery unregistered it, so pod churn
+     * does not grow the label set without bound.
+     */
+    public void forgetBackend(String backend) {
+        chosenBackends.remove(backend);
+    }
+
+    public void routeCookie(String outcome) {
+        counter(routeCookies, outcome).increment();
+    }
+
+    public void inspectorRelay(String path) {
+        counter(inspectorRelay, path).increment();
+    }
+
+    public void inspectorRelay(String path, int messages) {
+        counter(inspectorRelay, path).add(messages);
+    }
+
+    public void scaleRequested(String workload) {
+        counter(scaleRequests, workload + "\u0000requested").increment();
+    }
+
+    public void scaleProgress(String workload, int readyDelta) {
+        counter(scaleRequests, workload + "\u0000progress").add(readyDelta);
+    }
+
+    public void scaleCompleted(String workload, long millis) {
+        counter(scaleRequests, workload + "\u0000completed").increment();
+        scaleCompletion.observeNanos(millis * 1_000_000L);
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        synchronized (gauges) {
+            gauges.add(new Gauge(name, help, null, () -> Map.of("", value.getAsLong())));
+        }
+    }
+
+    public void gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        synchronized (gauges) {
+            gauges.add(new Gauge(name, help, label, values));
+        }
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        header(sb, "proxyops_kubernetes_request_duration_seconds", "histogram",
+                "Kubernetes API request latency by client method and HTTP status (0 = transport error).");
+        for (Map.Entry<String, Map<Integer, Histogram>> byMethod : kubernetesRequests.entrySet()) {
+            for (Map.Entry<Integer, Histogram> byCode : byMethod.getValue().entrySet()) {
+                String labels = "method=\"" + escape(byMethod.getKey()) + "\",code=\"" + byCode.getKey() + "\"";
+                byCode.getValue().render(sb, "proxyops_kubernetes_request_duration_seconds", labels);
+            }
+        }
+
+        header(sb, "proxyops_watch_reconnects_total", "counter", "Endpoint watch streams re-opened after the first one.");
+        sample(sb, "proxyops_watch_reconnects_total", "", watchReconnects.sum());
+        header(sb, "proxyops_watch_events_total", "counter", "Endpoint watch events received by type.");
+        for (Map.Entry<String, LongAdder> e : watchEvents.entrySet()) {
+            sample(sb, "proxyops_watch_events_total", "type=\"" + escape(e.getKey()) + "\"", e.getValue().sum());
+        }
+        header(sb, "proxyops_watch_syncs_total", "counter", "Watch events by discovery source and how they were paced.");
+        for (Map.Entry<String, LongAdder> e : watchSyncs.entrySet()) {
+            int sep = e.getKey().indexOf('\u0000');
+            String labels = "source=\"" + escape(e.getKey().substring(0, sep))
+                    + "\",outcome=\"" + e.getKey().substring(sep + 1) + "\"";
+            sample(sb, "proxyops_watch_syncs_total", labels, e.getValue().sum());
+        }
+
+        header(sb, "proxyops_discovery_sync_duration_seconds", "histogram", "Duration of successful discovery syncs.");
+        syncDuration.render(sb, "proxyops_discovery_sync_duration_seconds", "");
+        header(sb, "proxyops_discovery_sync_failures_total", "counter", "Discovery syncs skipped because the apiserver could not be read.");
+        sample(sb, "proxyops_discovery_sync_failures_total", "", syncFailures.sum());
+        header(sb, "proxyops_discovery_sync_changes_total", "counter", "Backend registrations changed by discovery syncs.");
+        sample(sb, "proxyops_discovery_sync_changes_total", "change=\"added\"", syncAdded.sum());
+        sample(sb, "proxyops_discovery_sync_changes_total", "change=\"removed\"", syncRemoved.sum());
+        sample(sb, "proxyops_discovery_sync_changes_total", "change=\"updated\"", syncUpdated.sum());
+        sample(sb, "proxyops_discovery_sync_changes_total", "change=\"restored\"", syncRestored.sum());
+
+        header(sb, "proxyops_initial_server_selection_seconds", "histogram", "Time spent choosing the initial server on join.");
+        initialSelection.render(sb, "proxyops_initial_server_selection_seconds", "");
+        header(sb, "proxyops_initial_server_chosen_total", "counter", "Initial server decisions by chosen backend.");
+        for (Map.Entry<String, LongAdder> e : chosenBackends.entrySet()) {
+            sample(sb, "proxyops_initial_server_chosen_total", "backend=\"" + escape(e.getKey()) + "\"", e.getValue().sum());
+        }
+        sample(sb, "proxyops_initial_server_chosen_total", "backend=\"\"", chosenNone.sum());
+        header(sb, "proxyops_route_cookie_total", "counter", "Transfer route cookies on arrival by outcome.");
+        for (Map.Entry<String, LongAdder> e : routeCookies.entrySet()) {
+            sample(sb, "proxyops_route_cookie_total", "outcome=\"" + e.getKey() + "\"", e.getValue().sum());
+        }
+        header(sb, "proxyops_inspector_relay_messages_total", "counter", "LobbyInspector relay messages by path.");
+        for (Map.Entry<String, LongAdder> e : inspectorRelay.entrySet()) {
+            sample(sb, "proxyops_inspector_relay_messages_total", "path=\"" + e.getKey() + "\"", e.getValue().sum());
+        }
+
+        header(sb, "proxyops_scale_requests_total", "counter", "Scale request lifecycle events by workload and phase.");
+        for (Map.Entry<String, LongAdder> e : scaleRequests.entrySet()) {
+            int sep = e.getKey().indexOf('\u0000');
+            String labels = "workload=\"" + escape(e.getKey().substring(0, sep))
+                    + "\",phase=\"" + e.getKey().substring(sep + 1) + "\"";
+            sample(sb, "proxyops_scale_requests_total", labels, e.getValue().sum());
+        }
+        header(sb, "proxyops_scale_request_completion_seconds", "histogram", "Time from scale request to full readiness.");
+        scaleCompletion.render(sb, "proxyops_scale_request_completion_seconds", "");
+
+        List<Gauge> snapshot;
+        synchronized (gauges) {
+            snapshot = List.copyOf(gauges);
+        }
+        for (Gauge g : snapshot) {
+            header(sb, g.name(), "gauge", g.help());
+            for (Map.Entry<String, ? extends Number> e : g.values().get().entrySet()) {
+                String labels = g.label() == null ? "" : g.label() + "=\"" + escape(e.getKey()) + "\"";
+                sample(sb, g.name(), labels, e.getValue().doubleValue());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> map, String key) {
+        LongAdder adder = map.get(key);
+        return adder != null ? adder : map.computeIfAbsent(key, NEW_ADDER);
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static final class Histogram {
+        private final String[] boundLabels;
+        private final long[] boundNanos;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(double[] boundsSeconds) {
+            this.boundLabels = new String[boundsSeconds.length];
+            this.boundNanos = new long[boundsSeconds.length];
+            this.buckets = new LongAdder[boundsSeconds.length];
+            for (int i = 0; i < boundsSeconds.length; i++) {
+                // Plain decimals ("0.000001", "2.5", "10"), not Double.toString's "1.0E-6".
+                boundLabels[i] = "le=\"" + BigDecimal.valueOf(boundsSeconds[i]).stripTrailingZeros().toPlainString() + "\"";
+                boundNanos[i] = (long) (boundsSeconds[i] * 1_000_000_000L);
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void observeNanos(long nanos) {
+            for (int i = 0; i < boundNanos.length; i++) {
+                if (nanos <= boundNanos[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        void render(StringBuilder sb, String name, String labels) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < boundLabels.length; i++) {
+                cumulative += buckets[i].sum();
+                sample(sb, name + "_bucket", prefix + boundLabels[i], cumulative);
+            }
+            long total = Math.max(count.sum(), cumulative);
+            sample(sb, name + "_bucket", prefix + "le=\"+Inf\"", total);
+            sample(sb, name + "_sum", labels, sumNanos.sum() / 1_000_000_000.0);
+            sample(sb, name + "_count", labels, total);
+        }
+    }
+
+    private record Gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {}
+}
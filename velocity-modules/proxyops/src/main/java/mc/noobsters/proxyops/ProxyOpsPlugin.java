@@ -3,9 +3,17 @@ package mc.noobsters.proxyops;
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandMeta;
 import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.player.CookieReceiveEvent;
 import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.network.HandshakeIntent;
+import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.api.permission.Tristate;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.Player;
@@ -16,21 +24,26 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Plugin(id = "proxyops", name = "ProxyOps", version = "0.1.0", authors = {"noobstersmc"})
 public class ProxyOpsPlugin {
@@ -47,24 +60,37 @@ public class ProxyOpsPlugin {
     private final int targetBasePort;
     private final boolean haproxyProtocolRequired;
     private final boolean discoveryEnabled;
-    private final String discoveryLabelKey;
-    private final String discoveryLabelValue;
-    private final String discoveryNamePrefix;
     private final long discoveryIntervalSeconds;
     private final boolean discoveryWatchEnabled;
     private final String scaleNotifyPermission;
     private final String runtimeConfigMap;
-    private final Set<String> managedDiscoveredServers = new HashSet<>();
-    private final AtomicLong nextWatchSyncAtMillis = new AtomicLong(0);
+    private final boolean httpEnabled;
+    private final int httpPort;
+    private final boolean metricsEnabled;
+    private final boolean jfrEnabled;
+    private final ProxyHealth health;
+    private final ProxyOpsMetrics metrics = new ProxyOpsMetrics();
+    private final OpsExecutor ops;
+    private final DiscoverySources discovery;
+    private final ReentrantLock registrationLock = new ReentrantLock();
     private final Map<String, KubernetesClient.WorkloadStatus> lastWorkloadStatus = new ConcurrentHashMap<>();
     private final Map<String, ScaleRequest> activeScaleRequests = new ConcurrentHashMap<>();
     private volatile String defaultServerKey = "limbo";
     private KubernetesClient k8s;
+    private OpsHttpServer httpServer;
+    private final JfrRecording jfr;
+    private final boolean routeCookieEnabled;
+    private final long routeCookieTtlSeconds;
+    private final long routeCookieWaitMillis;
+    private final Map<UUID, CompletableFuture<byte[]>> pendingRouteCookies = new ConcurrentHashMap<>();
+    private volatile RouteCookie routeCookie;
+    private final InspectorRelay inspectorRelay;
 
     @Inject
     public ProxyOpsPlugin(ProxyServer proxy, Logger logger) {
         this.proxy = proxy;
         this.logger = logger;
+        this.ops = new OpsExecutor(logger);
         this.podName = envOr("POD_NAME", "unknown-pod");
         this.proxyPort = Integer.parseInt(envOr("PROXY_PORT", "25577"));
         this.namespace = envOr("POD_NAMESPACE", "minecraft");
@@ -76,140 +102,438 @@ public class ProxyOpsPlugin {
         this.targetBasePort = Integer.parseInt(envOr("PROXY_TARGET_BASE_PORT", "25578"));
         this.haproxyProtocolRequired = Boolean.parseBoolean(envOr("PROXY_HAPROXY_PROTOCOL_REQUIRED", "true"));
         this.discoveryEnabled = Boolean.parseBoolean(envOr("PROXY_DISCOVERY_ENABLED", "true"));
-        this.discoveryLabelKey = envOr("PROXY_DISCOVERY_LABEL_KEY", "mc.noobsters.net/velocity-discovery");
-        this.discoveryLabelValue = envOr("PROXY_DISCOVERY_LABEL_VALUE", "enabled");
-        this.discoveryNamePrefix = envOrAllowBlank("PROXY_DISCOVERY_NAME_PREFIX", "auto-");
+        String discoveryLabelKey = envOr("PROXY_DISCOVERY_LABEL_KEY", "mc.noobsters.net/velocity-discovery");
+        String discoveryLabelValue = envOr("PROXY_DISCOVERY_LABEL_VALUE", "enabled");
+        String defaultSource = namespace + "|" + discoveryLabelKey + "=" + discoveryLabelValue;
+        String discoveryNamePrefix = envOrAllowBlank("PROXY_DISCOVERY_NAME_PREFIX", "auto-");
+        long discoveryMinSyncMillis = Long.parseLong(envOr("PROXY_DISCOVERY_MIN_SYNC_MILLIS", "1000"));
+        DiscoverySources sources = DiscoverySources.parse(envOr("PROXY_DISCOVERY_SOURCES", defaultSource),
+                discoveryNamePrefix, discoveryMinSyncMillis,
+                problem -> logger.error("Ignoring PROXY_DISCOVERY_SOURCES entry {}", problem));
+        if (sources == null) {
+            logger.error("PROXY_DISCOVERY_SOURCES has no valid entry; discovering from {} only", defaultSource);
+            sources = DiscoverySources.parse(defaultSource, discoveryNamePrefix, discoveryMinSyncMillis,
+                    problem -> logger.error("Ignoring default discovery source {}", problem));
+        }
+        this.discovery = sources;
         this.discoveryIntervalSeconds = Long.parseLong(envOr("PROXY_DISCOVERY_INTERVAL_SECONDS", "5"));
         this.discoveryWatchEnabled = Boolean.parseBoolean(envOr("PROXY_DISCOVERY_WATCH_ENABLED", "true"));
         this.scaleNotifyPermission = envOr("PROXY_SCALE_NOTIFY_PERMISSION", "proxyops.scale.notify");
         this.runtimeConfigMap = envOr("PROXY_RUNTIME_CONFIGMAP", "proxyops-runtime");
+        this.httpEnabled = Boolean.parseBoolean(envOr("PROXY_HTTP_ENABLED", "true"));
+        this.httpPort = Integer.parseInt(envOr("PROXY_HTTP_PORT", "8081"));
+        this.metricsEnabled = Boolean.parseBoolean(envOr("PROXY_METRICS_ENABLED", "true"));
+        this.jfrEnabled = Boolean.parseBoolean(envOr("PROXY_JFR_ENABLED", "false"));
+        this.jfr = new JfrRecording(logger, Path.of(envOr("PROXY_JFR_DUMP_DIR", "/tmp")));
+        this.routeCookieEnabled = Boolean.parseBoolean(envOr("PROXY_ROUTE_COOKIE_ENABLED", "true"));
+        this.routeCookieTtlSeconds = Long.parseLong(envOr("PROXY_ROUTE_COOKIE_TTL_SECONDS", "120"));
+        this.routeCookieWaitMillis = Long.parseLong(envOr("PROXY_ROUTE_COOKIE_WAIT_MILLIS", "500"));
+        String redisHost = envOrAllowBlank("PROXY_REDIS_HOST", "");
+        this.inspectorRelay = Boolean.parseBoolean(envOr("PROXY_INSPECTOR_RELAY_ENABLED", "true"))
+                ? new InspectorRelay(proxy, logger, metrics, ops, podName,
+                        redisHost.isBlank() ? null : new RedisPubSub(redisHost.trim(),
+                                Integer.parseInt(envOr("PROXY_REDIS_PORT", "6379")),
+                                envOrAllowBlank("PROXY_REDIS_PASSWORD", "")),
+                        envOr("PROXY_INSPECTOR_RELAY_CHANNEL", "proxyops:lobbyinspector"))
+                : null;
+        String drainMarker = envOrAllowBlank("PROXY_DRAIN_MARKER", "/tmp/draining");
+        this.health = new ProxyHealth(
+                discoveryEnabled,
+                discoveryEnabled && discoveryWatchEnabled ? discovery.all().size() : 0,
+                drainMarker.isBlank() ? null : Path.of(drainMarker),
+                Duration.ofSeconds(Math.max(60, discoveryIntervalSeconds * 6)).toMillis(),
+                discovery::watchLagMillis);
     }
 
     @Subscribe
     public void onInit(ProxyInitializeEvent event) {
-        this.k8s = KubernetesClient.inCluster(logger);
+        this.k8s = KubernetesClient.inCluster(logger, metrics);
         CommandMeta meta = proxy.getCommandManager().metaBuilder("proxyops")
                 .aliases("proxy", "pops")
                 .plugin(this)
                 .build();
         proxy.getCommandManager().register(meta, new ProxyOpsCommand());
         logger.info("ProxyOps loaded on pod {}", podName);
-        reconcileState();
-        proxy.getScheduler().buildTask(this, this::reconcileState)
-                .repeat(Duration.ofSeconds(Math.max(3, discoveryIntervalSeconds)))
-                .schedule();
+        if (httpEnabled) {
+            startHttpServer();
+        }
+        if (inspectorRelay != null) {
+            proxy.getEventManager().register(this, inspectorRelay);
+            inspectorRelay.start();
+        }
+        if (routeCookieEnabled) {
+            loadRouteCookieKey();
+            // The cookie has to be fresh at transfer time, not at connect time, so keep re-signing it.
+            ops.repeat("route-cookie-refresh", Duration.ofSeconds(Math.max(5, routeCookieTtlSeconds / 3)), this::refreshRouteCookies);
+        }
+        if (jfrEnabled) {
+            jfr.start(
+                    envOr("PROXY_JFR_SETTINGS", "default"),
+                    Duration.ofMinutes(Long.parseLong(envOr("PROXY_JFR_MAX_AGE_MINUTES", "30"))),
+                    Long.parseLong(envOr("PROXY_JFR_MAX_SIZE_MB", "128")) * 1024 * 1024);
+        }
+        ops.repeat("reconcile", Duration.ofSeconds(Math.max(3, discoveryIntervalSeconds)), this::reconcileState);
         if (discoveryEnabled) {
-            logger.info("ProxyOps discovery enabled: label {}={}", discoveryLabelKey, discoveryLabelValue);
+            for (DiscoverySource source : discovery.all()) {
+                logger.info("ProxyOps discovery source {}: namespace {}, selector {}, prefix '{}'{}",
+                        source.label(), source.namespace, source.selector, source.namePrefix,
+                        source.group.isEmpty() ? "" : ", group " + source.group);
+            }
             if (discoveryWatchEnabled) {
-                startDiscoveryWatchLoop();
+                startDiscoveryWatchLoops();
             }
         }
     }
 
     @Subscribe
-    public void onChooseInitialServer(PlayerChooseInitialServerEvent event) {
+    public void onShutdown(ProxyShutdownEvent event) {
+        ops.close();
+        if (httpServer != null) {
+            httpServer.stop();
+            httpServer = null;
+        }
+        jfr.stop();
+    }
+
+    @Subscribe
+    public void onLogin(LoginEvent event) {
+        Player player = event.getPlayer();
+        if (routeCookie == null
+                || player.getHandshakeIntent() != HandshakeIntent.TRANSFER
+                || !player.getProtocolVersion().noLessThan(ProtocolVersion.MINECRAFT_1_20_5)) {
+            return;
+        }
+        // Ask early; the answer usually arrives before the initial server is chosen.
+        pendingRouteCookies.put(player.getUniqueId(), new CompletableFuture<>());
+        player.requestCookie(RouteCookie.KEY);
+    }
+
+    @Subscribe
+    public void onCookieReceive(CookieReceiveEvent event) {
+        if (!RouteCookie.KEY.equals(event.getOriginalKey())) {
+            return;
+        }
+        event.setResult(CookieReceiveEvent.ForwardResult.handled());
+        CompletableFuture<byte[]> pending = pendingRouteCookies.get(event.getPlayer().getUniqueId());
+        if (pending != null) {
+            pending.complete(event.getOriginalData());
+        }
+    }
+
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        RouteCookie cookie = routeCookie;
+        if (cookie != null) {
+            storeRouteCookie(cookie, event.getPlayer(), Instant.now().getEpochSecond());
+        }
+    }
+
+    /**
+     * Re-signs every connected player's route cookie. A drain or {@code /transfer} can come at any
+     * point in a session, and the TTL is meant to cover only the transfer hop.
+     */
+    private void refreshRouteCookies() {
+        RouteCookie cookie = routeCookie;
+        if (cookie == null) {
+            return;
+        }
+        long now = Instant.now().getEpochSecond();
+        for (Player player : proxy.getAllPlayers()) {
+            storeRouteCookie(cookie, player, now);
+        }
+    }
+
+    private void storeRouteCookie(RouteCookie cookie, Player player, long nowSeconds) {
+        if (!player.getProtocolVersion().noLessThan(ProtocolVersion.MINECRAFT_1_20_5)) {
+            return;
+        }
+        player.getCurrentServer().ifPresent(connection -> player.storeCookie(RouteCookie.KEY, cookie.encode(
+                player.getUniqueId(), connection.getServerInfo().getName(), podName, nowSeconds)));
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        pendingRouteCookies.remove(event.getPlayer().getUniqueId());
+    }
+
+    @Subscribe
+    public EventTask onChooseInitialServer(PlayerChooseInitialServerEvent event) {
+        CompletableFuture<byte[]> pending = pendingRouteCookies.remove(event.getPlayer().getUniqueId());
+        if (pending == null) {
+            chooseInitialServer(event, null);
+            return null;
+        }
+        return EventTask.resumeWhenComplete(pending
+                .completeOnTimeout(null, routeCookieWaitMillis, TimeUnit.MILLISECONDS)
+                .thenAccept(data -> chooseInitialServer(event, data == null ? RouteCookie.Decoded.rejected(RouteCookie.Outcome.TIMEOUT)
+                        : routeCookie.decode(event.getPlayer().getUniqueId(), data, Instant.now().getEpochSecond()))));
+    }
+
+    private void chooseInitialServer(PlayerChooseInitialServerEvent event, RouteCookie.Decoded cookie) {
+        JfrEvents.InitialServer decision = new JfrEvents.InitialServer();
+        decision.begin();
         if (event.getInitialServer().isPresent()) {
             // Respect initial server selected by other plugins (for example RedisBungee reconnect).
+            decision.end();
+            if (decision.shouldCommit()) {
+                decision.player = event.getPlayer().getUsername();
+                decision.defaultKey = defaultServerKey;
+                decision.chosen = event.getInitialServer().get().getServerInfo().getName();
+                decision.keptExisting = true;
+                decision.commit();
+            }
             return;
         }
-        resolveDefaultServer().ifPresent(event::setInitialServer);
+        long start = System.nanoTime();
+        Optional<RegisteredServer> chosen = restoreRoute(cookie);
+        if (chosen.isEmpty()) {
+            chosen = resolveDefaultServer();
+        }
+        chosen.ifPresent(event::setInitialServer);
+        String chosenName = chosen.isPresent() ? chosen.get().getServerInfo().getName() : null;
+        metrics.initialServerChosen(chosenName, System.nanoTime() - start);
+        decision.end();
+        if (decision.shouldCommit()) {
+            decision.player = event.getPlayer().getUsername();
+            decision.defaultKey = defaultServerKey;
+            decision.chosen = chosenName;
+            decision.routeCookie = cookie == null ? null : cookie.outcome().label();
+            decision.commit();
+        }
     }
 
     private void reconcileState() {
         refreshDefaultServerKey();
         if (discoveryEnabled) {
-            syncDiscoveredServers();
+            syncAllSources("reconcile");
         }
         monitorScaleProgress();
+        health.markReconcile();
     }
 
-    private synchronized void syncDiscoveredServers() {
-        List<KubernetesClient.BackendRef> refs = k8s.listDiscoverableBackends(namespace, discoveryLabelKey, discoveryLabelValue);
-        Map<String, ServerInfo> desired = new HashMap<>();
-        for (KubernetesClient.BackendRef ref : refs) {
-            if (ref.readyEndpoints() <= 0) {
-                continue;
-            }
-            String name = discoveryNamePrefix + ref.name();
-            ServerInfo info = new ServerInfo(name, InetSocketAddress.createUnresolved(ref.host(), ref.port()));
-            desired.put(name, info);
+    private void startHttpServer() {
+        try {
+            httpServer = OpsHttpServer.start(logger, httpPort, ops);
+        } catch (IOException e) {
+            logger.error("Failed to start ProxyOps HTTP listener on port {}", httpPort, e);
+            return;
+        }
+        httpServer.route("/readyz", () -> OpsHttpServer.Response.json(
+                health.ready() ? 200 : 503, health.toJson().toString()));
+        httpServer.route("/livez", () -> OpsHttpServer.Response.json(
+                health.alive() ? 200 : 503, health.toJson().toString()));
+        if (metricsEnabled) {
+            registerGauges();
+            httpServer.route("/metrics", () -> new OpsHttpServer.Response(
+                    200, "text/plain; version=0.0.4; charset=utf-8", metrics.render()));
         }
+        logger.info("ProxyOps HTTP listening on :{} (/readyz, /livez{})", httpPort, metricsEnabled ? ", /metrics" : "");
+    }
 
-        for (ServerInfo info : desired.values()) {
-            Optional<RegisteredServer> existing = proxy.getServer(info.getName());
-            if (existing.isPresent()) {
-                if (!managedDiscoveredServers.contains(info.getName())) {
-                    // Do not override statically configured servers with the same name.
-                    continue;
-                }
-                InetSocketAddress old = existing.get().getServerInfo().getAddress();
-                if (old.getHostString().equals(info.getAddress().getHostString()) && old.getPort() == info.getAddress().getPort()) {
-                    managedDiscoveredServers.add(info.getName());
-                    continue;
-                }
-                proxy.unregisterServer(existing.get().getServerInfo());
-            }
-            proxy.registerServer(info);
-            managedDiscoveredServers.add(info.getName());
-        }
-
-        List<String> stale = managedDiscoveredServers.stream()
-                .filter(name -> !desired.containsKey(name))
-                .toList();
-        for (String name : stale) {
-            Optional<RegisteredServer> existing = proxy.getServer(name);
-            existing.ifPresent(server -> proxy.unregisterServer(server.getServerInfo()));
-            managedDiscoveredServers.remove(name);
-        }
-    }
-
-    private void startDiscoveryWatchLoop() {
-        Thread t = new Thread(() -> {
-            logger.info("ProxyOps endpoint watch enabled for discovery");
-            while (true) {
-                boolean ok = k8s.watchDiscoverableEndpointEvents(
-                        namespace,
-                        discoveryLabelKey,
-                        discoveryLabelValue,
-                        this::triggerWatchSync
-                );
-                if (!ok) {
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return;
+    private void registerGauges() {
+        metrics.gauge("proxyops_discovered_backends", "Backends currently registered by discovery.",
+                () -> discovery.size());
+        metrics.gauge("proxyops_discovery_source_backends", "Backends currently registered by each discovery source.", "source",
+                discovery::sizeBySource);
+        metrics.gauge("proxyops_discovery_name_conflicts", "Discovered names each source skipped because Velocity already has a server with that name.", "source",
+                discovery::conflictsBySource);
+        metrics.gauge("proxyops_scale_requests_active", "Scale requests still waiting for full readiness.",
+                () -> activeScaleRequests.size());
+        metrics.gauge("proxyops_backend_players", "Players connected to each registered backend on this proxy.", "backend",
+                () -> {
+                    Map<String, Integer> out = new HashMap<>();
+                    for (RegisteredServer server : proxy.getAllServers()) {
+                        out.put(server.getServerInfo().getName(), server.getPlayersConnected().size());
                     }
-                }
+                    return out;
+                });
+    }
+
+    /** Syncs every source concurrently, so a slow namespace does not hold up the others. */
+    private void syncAllSources(String trigger) {
+        List<DiscoverySource> sources = discovery.all();
+        if (sources.size() == 1) {
+            syncDiscoveredServers(sources.get(0), trigger);
+            return;
+        }
+        List<CompletableFuture<Void>> pending = new ArrayList<>(sources.size());
+        for (DiscoverySource source : sources) {
+            pending.add(ops.supply("sync-" + source.label(), () -> {
+                syncDiscoveredServers(source, trigger);
+                return null;
+            }));
+        }
+        for (CompletableFuture<Void> sync : pending) {
+            sync.exceptionally(e -> null).join();
+        }
+    }
+
+    private void syncDiscoveredServers(DiscoverySource source, String trigger) {
+        lockDiscovery(source.lock, source.label(), trigger);
+        JfrEvents.DiscoverySync event = new JfrEvents.DiscoverySync();
+        event.begin();
+        try {
+            syncDiscoveredServersLocked(source, trigger, event);
+        } finally {
+            source.lock.unlock();
+            event.end();
+            if (event.shouldCommit()) {
+                event.source = source.label();
+                event.trigger = trigger;
+                event.commit();
             }
-        }, "proxyops-endpoint-watch");
-        t.setDaemon(true);
-        t.start();
+        }
     }
 
-    private void triggerWatchSync() {
-        long now = System.currentTimeMillis();
-        long gate = nextWatchSyncAtMillis.get();
-        if (now < gate) {
+    private void lockDiscovery(ReentrantLock lock, String lockName, String caller) {
+        if (lock.tryLock()) {
             return;
         }
-        long next = now + 1000;
-        if (!nextWatchSyncAtMillis.compareAndSet(gate, next)) {
+        JfrEvents.DiscoveryLockWait wait = new JfrEvents.DiscoveryLockWait();
+        wait.begin();
+        lock.lock();
+        wait.end();
+        if (wait.shouldCommit()) {
+            wait.caller = caller;
+            wait.lock = lockName;
+            wait.commit();
+        }
+    }
+
+    /**
+     * Lists one source under its own lock, then applies the diff under the short registration lock
+     * shared by all sources, so a name is never claimed by two sources at once.
+     */
+    private void syncDiscoveredServersLocked(DiscoverySource source, String trigger, JfrEvents.DiscoverySync event) {
+        long start = System.nanoTime();
+        List<KubernetesClient.BackendRef> refs = k8s.listDiscoverableBackends(source.namespace, source.selector, source.refs);
+        if (refs == null) {
+            // Keep the current registrations when the apiserver is unreachable.
+            metrics.syncFailed();
             return;
         }
-        syncDiscoveredServers();
+        DiscoveredServers.Changes changes;
+        lockDiscovery(registrationLock, "registration", trigger);
+        try {
+            changes = source.servers.diff(refs, name -> proxy.getServer(name).isPresent());
+            for (ServerInfo info : changes.unregister()) {
+                proxy.getServer(info.getName()).ifPresent(server -> proxy.unregisterServer(server.getServerInfo()));
+            }
+            for (ServerInfo info : changes.register()) {
+                proxy.registerServer(info);
+            }
+            source.servers.apply(changes);
+            for (String name : source.updateConflicts(changes.conflicts())) {
+                logger.warn("Discovery source {} skipped backend {}: a server with that name is already registered; give the source its own name prefix",
+                        source.label(), name);
+            }
+            for (ServerInfo info : changes.unregister()) {
+                // Address updates unregister and re-register the same name; only forget names that are gone.
+                if (!source.servers.manages(info.getName())) {
+                    metrics.forgetBackend(info.getName());
+                }
+            }
+        } finally {
+            registrationLock.unlock();
+        }
+        source.markSynced();
+        if (discovery.allSynced()) {
+            health.markSync();
+        }
+        if (changes.restored() > 0) {
+            logger.warn("Re-registered {} discovered backend(s) from {} that were unregistered outside discovery",
+                    changes.restored(), source.label());
+        }
+        metrics.syncCompleted(System.nanoTime() - start, changes.added(), changes.removed(), changes.updated(), changes.restored());
+        event.succeeded = true;
+        event.backends = source.servers.size();
+        event.added = changes.added();
+        event.removed = changes.removed();
+        event.updated = changes.updated();
+        event.restored = changes.restored();
+    }
+
+    private void startDiscoveryWatchLoops() {
+        for (DiscoverySource source : discovery.all()) {
+            ops.run("endpoint-watch-" + source.label(), () -> watchSource(source));
+        }
+    }
+
+    private void watchSource(DiscoverySource source) {
+        logger.info("ProxyOps endpoint watch enabled for discovery source {}", source.label());
+        AtomicBoolean everOpened = new AtomicBoolean();
+        AtomicBoolean open = new AtomicBoolean();
+        boolean first = true;
+        while (!ops.isClosed()) {
+            if (!first) {
+                metrics.watchReconnect();
+            }
+            first = false;
+            boolean ok = k8s.watchDiscoverableEndpointEvents(
+                    source.namespace,
+                    source.selector,
+                    () -> {
+                        open.set(true);
+                        health.markWatchOpen(everOpened.getAndSet(true));
+                    },
+                    () -> triggerWatchSync(source)
+            );
+            if (open.getAndSet(false)) {
+                health.markWatchClosed();
+            }
+            if (!ok && !ops.pause(Duration.ofSeconds(2))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Syncs {@code source} at most once per its {@code minSyncMillis}. An event inside the window
+     * schedules one sync for the end of it instead of being dropped, and events already covered by
+     * that scheduled sync are coalesced. Other sources are paced independently.
+     */
+    private void triggerWatchSync(DiscoverySource source) {
+        health.markWatchEvent();
+        source.markEvent();
+        long wait = source.claimSync(System.currentTimeMillis());
+        if (wait == 0) {
+            metrics.watchSync(source.label(), "immediate");
+            syncDiscoveredServers(source, "watch");
+        } else if (source.queueTrailingSync()) {
+            metrics.watchSync(source.label(), "deferred");
+            ops.run("discovery-deferred-" + source.label(), () -> runDeferredSync(source, wait));
+        } else {
+            metrics.watchSync(source.label(), "coalesced");
+        }
+    }
+
+    private void runDeferredSync(DiscoverySource source, long waitMillis) {
+        if (!ops.pause(Duration.ofMillis(waitMillis))) {
+            return;
+        }
+        source.trailingSyncDue();
+        // An event may have claimed the window meanwhile; its sync lists after ours would have.
+        if (source.claimSync(System.currentTimeMillis()) == 0) {
+            syncDiscoveredServers(source, "watch-deferred");
+        }
     }
 
     private void refreshDefaultServerKey() {
-        String value = k8s.getConfigMapKey(namespace, runtimeConfigMap, "defaultServer");
+        Map<String, String> data = k8s.getConfigMapData(namespace, runtimeConfigMap);
+        if (data == null) {
+            return;
+        }
+        health.markConfigRead();
+        String value = data.get("defaultServer");
         if (value != null && !value.isBlank()) {
             defaultServerKey = value.trim();
         }
     }
 
     private void monitorScaleProgress() {
+        Map<WorkloadRef, KubernetesClient.WorkloadStatus> statuses = fetchWorkloadStatuses();
         for (WorkloadRef ref : scaleWorkloads()) {
-            KubernetesClient.WorkloadStatus status = k8s.getWorkloadStatus(namespace, ref.workload(), ref.kind());
+            KubernetesClient.WorkloadStatus status = statuses.get(ref);
             if (status == null) {
                 continue;
             }
@@ -217,6 +541,7 @@ public class ProxyOpsPlugin {
             KubernetesClient.WorkloadStatus previous = lastWorkloadStatus.put(key, status);
             if (previous != null && status.readyReplicas() > previous.readyReplicas()) {
                 int delta = status.readyReplicas() - previous.readyReplicas();
+                metrics.scaleProgress(ref.alias(), delta);
                 announceScaleEvent(ref.alias() + " scale progress: +" + delta + " ready (" +
                         status.readyReplicas() + "/" + status.desiredReplicas() + ").",
                         NamedTextColor.AQUA);
@@ -232,6 +557,7 @@ public class ProxyOpsPlugin {
                         ref.alias() + " scale complete at " + status.readyReplicas() + "/" + status.desiredReplicas() + ".",
                         NamedTextColor.GREEN);
                 activeScaleRequests.remove(key);
+                metrics.scaleCompleted(ref.alias(), Duration.between(request.requestedAt(), Instant.now()).toMillis());
             }
         }
     }
@@ -246,6 +572,22 @@ public class ProxyOpsPlugin {
         }
     }
 
+    /** Status of every scale workload, fetched concurrently; workloads that failed to load are absent. */
+    private Map<WorkloadRef, KubernetesClient.WorkloadStatus> fetchWorkloadStatuses() {
+        Map<WorkloadRef, CompletableFuture<KubernetesClient.WorkloadStatus>> pending = new LinkedHashMap<>();
+        for (WorkloadRef ref : scaleWorkloads()) {
+            pending.put(ref, ops.supply("workload-status", () -> k8s.getWorkloadStatus(namespace, ref.workload(), ref.kind())));
+        }
+        Map<WorkloadRef, KubernetesClient.WorkloadStatus> out = new HashMap<>();
+        pending.forEach((ref, future) -> {
+            KubernetesClient.WorkloadStatus status = future.exceptionally(e -> null).join();
+            if (status != null) {
+                out.put(ref, status);
+            }
+        });
+        return out;
+    }
+
     private List<WorkloadRef> scaleWorkloads() {
         return List.of(
                 new WorkloadRef("lobby", "paper-lobby", "statefulset"),
@@ -264,38 +606,61 @@ public class ProxyOpsPlugin {
     }
 
     private List<Integer> upcomingLobbyOrdinals(int desiredReplicas) {
-        Set<Integer> existing = new HashSet<>();
-        Pattern p = Pattern.compile("^lobby-(\\d+)-.*$");
-        for (String name : managedDiscoveredServers) {
-            Matcher m = p.matcher(name);
-            if (m.matches()) {
-                try {
-                    existing.add(Integer.parseInt(m.group(1)));
-                } catch (NumberFormatException ignored) {
-                }
+        BitSet existing = new BitSet();
+        for (String name : discovery.names()) {
+            int ordinal = BackendNaming.lobbyOrdinal(name);
+            if (ordinal >= 0) {
+                existing.set(ordinal);
             }
         }
         List<Integer> out = new ArrayList<>();
-        for (int i = 0; i < desiredReplicas; i++) {
-            if (!existing.contains(i)) {
-                out.add(i);
-            }
+        for (int i = existing.nextClearBit(0); i < desiredReplicas; i = existing.nextClearBit(i + 1)) {
+            out.add(i);
         }
         return out;
     }
 
+    /**
+     * Backend named by a verified transfer cookie, if it is still registered here. Records the
+     * cookie outcome either way.
+     */
+    private Optional<RegisteredServer> restoreRoute(RouteCookie.Decoded cookie) {
+        if (cookie == null) {
+            return Optional.empty();
+        }
+        if (cookie.outcome() != RouteCookie.Outcome.RESTORED) {
+            metrics.routeCookie(cookie.outcome().label());
+            return Optional.empty();
+        }
+        Optional<RegisteredServer> server = proxy.getServer(cookie.backend());
+        metrics.routeCookie(server.isPresent() ? cookie.outcome().label() : RouteCookie.Outcome.UNKNOWN_BACKEND.label());
+        return server;
+    }
+
+    private void loadRouteCookieKey() {
+        Path secretFile = Path.of(envOr("PROXY_FORWARDING_SECRET_FILE", "/etc/velocity-secret/forwarding.secret"));
+        try {
+            byte[] secret = Files.readAllBytes(secretFile);
+            if (secret.length == 0) {
+                logger.warn("Forwarding secret {} is empty; transfer route cookies disabled", secretFile);
+                return;
+            }
+            routeCookie = new RouteCookie(secret, routeCookieTtlSeconds);
+            logger.info("Transfer route cookies enabled (ttl {}s)", routeCookieTtlSeconds);
+        } catch (IOException e) {
+            logger.warn("Cannot read forwarding secret {}; transfer route cookies disabled", secretFile, e);
+        }
+    }
+
     private Optional<RegisteredServer> resolveDefaultServer() {
         String desired = defaultServerKey;
         Optional<RegisteredServer> exact = proxy.getServer(desired);
         if (exact.isPresent()) {
             return exact;
         }
-        List<String> matches = managedDiscoveredServers.stream()
-                .filter(n -> n.equals(desired) || n.startsWith(desired + "-"))
-                .sorted()
-                .toList();
-        if (!matches.isEmpty()) {
-            return proxy.getServer(matches.get(0));
+        String match = discovery.firstMatching(desired);
+        if (match != null) {
+            return proxy.getServer(match);
         }
         return proxy.getServer("limbo");
     }
@@ -318,6 +683,12 @@ public class ProxyOpsPlugin {
                 usage(invocation);
                 return;
             }
+            // Subcommands call the apiserver or write files; keep that off Velocity's command threads.
+            ops.run("command-" + args[0].toLowerCase(), () -> dispatch(invocation));
+        }
+
+        private void dispatch(Invocation invocation) {
+            String[] args = invocation.arguments();
             switch (args[0].toLowerCase()) {
                 case "where" -> where(invocation);
                 case "list" -> list(invocation);
@@ -326,6 +697,7 @@ public class ProxyOpsPlugin {
                 case "servers" -> servers(invocation);
                 case "default" -> setDefault(invocation);
                 case "scale" -> scale(invocation);
+                case "jfr" -> jfrDump(invocation);
                 default -> usage(invocation);
             }
         }
@@ -336,7 +708,7 @@ public class ProxyOpsPlugin {
         }
 
         private void usage(Invocation inv) {
-            inv.source().sendMessage(Component.text("/proxyops where | list | servers | default [name] | scale <lobby|survival|creative> <replicas> | go <pod-name> | update", NamedTextColor.YELLOW));
+            inv.source().sendMessage(Component.text("/proxyops where | list | servers | default [name] | scale <lobby|survival|creative> <replicas> | go <pod-name> | update | jfr", NamedTextColor.YELLOW));
         }
 
         private void where(Invocation inv) {
@@ -386,8 +758,8 @@ public class ProxyOpsPlugin {
                 return;
             }
             if (haproxyProtocolRequired) {
-                Integer ordinal = parseOrdinal(pod.name());
-                if (ordinal != null && !targetHost.isBlank()) {
+                int ordinal = BackendNaming.parseOrdinal(pod.name());
+                if (ordinal >= 0 && !targetHost.isBlank()) {
                     int targetPort = targetBasePort + ordinal;
                     player.transferToHost(InetSocketAddress.createUnresolved(targetHost, targetPort));
                     inv.source().sendMessage(Component.text(
@@ -426,20 +798,44 @@ public class ProxyOpsPlugin {
             }
         }
 
+        private void jfrDump(Invocation inv) {
+            if (inv.source().getPermissionValue("proxyops.update") == Tristate.FALSE) {
+                inv.source().sendMessage(Component.text("Missing permission: proxyops.update", NamedTextColor.RED));
+                return;
+            }
+            try {
+                Path out = jfr.dump();
+                if (out == null) {
+                    inv.source().sendMessage(Component.text("No JFR recording running (PROXY_JFR_ENABLED=false).", NamedTextColor.YELLOW));
+                    return;
+                }
+                logger.info("ProxyOps JFR recording dumped to {}", out);
+                inv.source().sendMessage(Component.text("JFR recording dumped to " + podName + ":" + out, NamedTextColor.GREEN));
+            } catch (IOException e) {
+                logger.error("Failed to dump JFR recording", e);
+                inv.source().sendMessage(Component.text("Failed to dump JFR recording. Check plugin logs.", NamedTextColor.RED));
+            }
+        }
+
         private void servers(Invocation inv) {
-            List<String> names = managedDiscoveredServers.stream().sorted().toList();
-            if (names.isEmpty()) {
+            if (discovery.size() == 0) {
                 inv.source().sendMessage(Component.text("No discovered backends currently registered.", NamedTextColor.YELLOW));
-            } else {
-                inv.source().sendMessage(Component.text("Discovered backends:", NamedTextColor.AQUA));
+            }
+            for (DiscoverySource source : discovery.all()) {
+                List<String> names = source.servers.names();
+                if (names.isEmpty()) {
+                    continue;
+                }
+                inv.source().sendMessage(Component.text("Discovered backends in " + source.label() + ":", NamedTextColor.AQUA));
                 for (String n : names) {
                     inv.source().sendMessage(Component.text("- " + n, NamedTextColor.GRAY));
                 }
             }
 
             inv.source().sendMessage(Component.text("Scale status:", NamedTextColor.AQUA));
+            Map<WorkloadRef, KubernetesClient.WorkloadStatus> statuses = fetchWorkloadStatuses();
             for (WorkloadRef ref : scaleWorkloads()) {
-                KubernetesClient.WorkloadStatus status = k8s.getWorkloadStatus(namespace, ref.workload(), ref.kind());
+                KubernetesClient.WorkloadStatus status = statuses.get(ref);
                 if (status == null) {
                     continue;
                 }
@@ -540,6 +936,7 @@ public class ProxyOpsPlugin {
                 return;
             }
             activeScaleRequests.put(ref.key(), new ScaleRequest(ref, replicas, Instant.now()));
+            metrics.scaleRequested(ref.alias());
             inv.source().sendMessage(Component.text(
                     "Scaled " + kind + "/" + workload + " to " + replicas
                             + " (runtime only; declarative specs unchanged).",
@@ -549,14 +946,31 @@ public class ProxyOpsPlugin {
                     NamedTextColor.YELLOW);
         }
 
+        @Override
+        public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+            String[] args = invocation.arguments();
+            if (args.length == 2 && "go".equalsIgnoreCase(args[0])) {
+                return ops.supply("suggest-go", () -> {
+                    List<String> out = new ArrayList<>();
+                    for (KubernetesClient.PodRef pod : k8s.listVelocityPods(namespace)) {
+                        if (pod.name().startsWith(args[1])) {
+                            out.add(pod.name());
+                        }
+                    }
+                    return out;
+                });
+            }
+            return CompletableFuture.completedFuture(suggest(invocation));
+        }
+
         @Override
         public List<String> suggest(Invocation invocation) {
             String[] args = invocation.arguments();
             if (args.length == 0) {
-                return List.of("where", "list", "servers", "default", "scale", "go", "update");
+                return List.of("where", "list", "servers", "default", "scale", "go", "update", "jfr");
             }
             if (args.length == 1) {
-                return List.of("where", "list", "servers", "default", "scale", "go", "update").stream()
+                return List.of("where", "list", "servers", "default", "scale", "go", "update", "jfr").stream()
                         .filter(s -> s.startsWith(args[0].toLowerCase()))
                         .toList();
             }
@@ -566,17 +980,13 @@ public class ProxyOpsPlugin {
                 out.add("survival");
                 out.add("creative");
                 out.add("limbo");
-                out.addAll(managedDiscoveredServers.stream().sorted().toList());
-                return out.stream().filter(s -> s.startsWith(args[1])).toList();
-            }
-            if (args.length == 2 && "go".equalsIgnoreCase(args[0])) {
-                List<String> out = new ArrayList<>();
-                for (KubernetesClient.PodRef pod : k8s.listVelocityPods(namespace)) {
-                    if (pod.name().startsWith(args[1])) {
-                        out.add(pod.name());
+                for (DiscoverySource source : discovery.all()) {
+                    if (!source.group.isEmpty() && !out.contains(source.group)) {
+                        out.add(source.group);
                     }
                 }
-                return out;
+                out.addAll(discovery.names());
+                return out.stream().filter(s -> s.startsWith(args[1])).toList();
             }
             if (args.length == 2 && "scale".equalsIgnoreCase(args[0])) {
                 return List.of("lobby", "survival", "creative").stream()
@@ -585,18 +995,6 @@ public class ProxyOpsPlugin {
             }
             return List.of();
         }
-
-        private Integer parseOrdinal(String pod) {
-            Matcher m = Pattern.compile(".*-(\\d+)$").matcher(pod);
-            if (!m.matches()) {
-                return null;
-            }
-            try {
-                return Integer.parseInt(m.group(1));
-            } catch (NumberFormatException e) {
-                return null;
-            }
-        }
     }
 
     private record WorkloadRef(String alias, String workload, String kind) {
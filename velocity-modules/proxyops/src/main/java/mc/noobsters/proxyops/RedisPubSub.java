@@ -0,0 +1,179 @@
+package mc.noobsters.proxyops;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Minimal Redis pub/sub client (RESP2), just enough to publish and subscribe to binary messages on
+ * the Redis instance the proxies already share for RedisBungee.
+ *
+ * <p>Each {@link Connection} is owned by one thread: the relay's publisher pipelines a batch of
+ * {@code PUBLISH} commands and then reads their replies, and the subscriber blocks reading pushes.
+ * Callers reconnect after an {@link IOException}.</p>
+ */
+final class RedisPubSub {
+    private static final int CONNECT_TIMEOUT_MILLIS = 3_000;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final String host;
+    private final int port;
+    private final String password;
+
+    RedisPubSub(String host, int port, String password) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+    }
+
+    String describe() {
+        return host + ":" + port;
+    }
+
+    /** Opens and authenticates a connection. */
+    Connection connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            Connection c = new Connection(socket);
+            if (!password.isEmpty()) {
+                c.command(bytes("AUTH"), bytes(password));
+                c.flush();
+                c.readReply();
+            }
+            return c;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+        }
+
+        /** Buffers one command; {@link #flush()} sends everything buffered. */
+        void command(byte[]... args) throws IOException {
+            out.write('*');
+            writeNumber(args.length);
+            for (byte[] arg : args) {
+                out.write('$');
+                writeNumber(arg.length);
+                out.write(arg);
+                out.write(CRLF);
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Reads one reply. Simple strings and integers are returned as text, bulk strings as bytes,
+         * arrays as {@code Object[]}; an error reply throws.
+         */
+        Object readReply() throws IOException {
+            int type = in.read();
+            switch (type) {
+                case '+', ':' -> {
+                    return readLine();
+                }
+                case '-' -> throw new IOException("Redis error: " + readLine());
+                case '$' -> {
+                    int length = Integer.parseInt(readLine());
+                    if (length < 0) {
+                        return null;
+                    }
+                    byte[] data = in.readNBytes(length);
+                    if (data.length < length || in.read() != '\r' || in.read() != '\n') {
+                        throw new EOFException("Truncated Redis bulk reply");
+                    }
+                    return data;
+                }
+                case '*' -> {
+                    int count = Integer.parseInt(readLine());
+                    if (count < 0) {
+                        return null;
+                    }
+                    Object[] items = new Object[count];
+                    for (int i = 0; i < count; i++) {
+                        items[i] = readReply();
+                    }
+                    return items;
+                }
+                case -1 -> throw new EOFException("Redis closed the connection");
+                default -> throw new IOException("Unexpected Redis reply type " + type);
+            }
+        }
+
+        /**
+         * Subscribes to {@code channel} and hands every message payload to {@code onMessage} until
+         * the connection fails. {@code onSubscribed} runs once the subscription is confirmed.
+         */
+        void subscribe(String channel, Runnable onSubscribed, Consumer<byte[]> onMessage) throws IOException {
+            command(bytes("SUBSCRIBE"), bytes(channel));
+            flush();
+            while (true) {
+                if (!(readReply() instanceof Object[] push) || push.length < 3 || !(push[0] instanceof byte[] kind)) {
+                    throw new IOException("Unexpected Redis push");
+                }
+                String k = new String(kind, StandardCharsets.UTF_8);
+                if (k.equals("subscribe")) {
+                    onSubscribed.run();
+                } else if (k.equals("message") && push[2] instanceof byte[] payload) {
+                    onMessage.accept(payload);
+                }
+            }
+        }
+
+        private void writeNumber(int n) throws IOException {
+            out.write(bytes(Integer.toString(n)));
+            out.write(CRLF);
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder(16);
+            while (true) {
+                int b = in.read();
+                if (b == -1) {
+                    throw new EOFException("Redis closed the connection");
+                }
+                if (b == '\r') {
+                    if (in.read() != '\n') {
+                        throw new IOException("Malformed Redis line");
+                    }
+                    return sb.toString();
+                }
+                sb.append((char) b);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway.
+            }
+        }
+    }
+}
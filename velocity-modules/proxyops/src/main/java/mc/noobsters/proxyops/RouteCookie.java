@@ -0,0 +1,115 @@
+package mc.noobsters.proxyops;
+
+import net.kyori.adventure.key.Key;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Signed transfer cookie carrying a player's current backend, so the proxy a player is transferred
+ * to can send them straight back to it instead of re-running initial server selection.
+ *
+ * <p>Layout: version byte, issued-at epoch seconds, backend name, source pod, then a truncated
+ * HMAC-SHA256 over those bytes and the player's UUID (so a cookie cannot be replayed by another
+ * account). The key is the Velocity forwarding secret, which every proxy in the fleet shares.</p>
+ */
+final class RouteCookie {
+    static final Key KEY = Key.key("proxyops", "route");
+
+    private static final byte VERSION = 1;
+    private static final int MAC_BYTES = 16;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    RouteCookie(byte[] secret, long ttlSeconds) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    byte[] encode(UUID player, String backend, String sourcePod, long nowSeconds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(nowSeconds);
+            out.writeUTF(backend);
+            out.writeUTF(sourcePod);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        byte[] out = Arrays.copyOf(body, body.length + MAC_BYTES);
+        System.arraycopy(mac(player, body, body.length), 0, out, body.length, MAC_BYTES);
+        return out;
+    }
+
+    /**
+     * Verifies and decodes a cookie for {@code player}. Never throws on bad input; the outcome says
+     * why a cookie was rejected.
+     */
+    Decoded decode(UUID player, byte[] data, long nowSeconds) {
+        if (data == null || data.length == 0) {
+            return Decoded.rejected(Outcome.ABSENT);
+        }
+        if (data.length <= MAC_BYTES + 9 || data[0] != VERSION) {
+            return Decoded.rejected(Outcome.INVALID);
+        }
+        int bodyLength = data.length - MAC_BYTES;
+        byte[] expected = Arrays.copyOf(mac(player, data, bodyLength), MAC_BYTES);
+        byte[] actual = Arrays.copyOfRange(data, bodyLength, data.length);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return Decoded.rejected(Outcome.INVALID);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, bodyLength - 1))) {
+            long issuedAt = in.readLong();
+            String backend = in.readUTF();
+            String sourcePod = in.readUTF();
+            if (nowSeconds - issuedAt > ttlSeconds || issuedAt - nowSeconds > ttlSeconds) {
+                return Decoded.rejected(Outcome.EXPIRED);
+            }
+            return new Decoded(Outcome.RESTORED, backend, sourcePod);
+        } catch (IOException e) {
+            return Decoded.rejected(Outcome.INVALID);
+        }
+    }
+
+    private byte[] mac(UUID player, byte[] body, int length) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(ByteBuffer.allocate(16)
+                    .putLong(player.getMostSignificantBits())
+                    .putLong(player.getLeastSignificantBits())
+                    .array());
+            mac.update(body, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        }
+    }
+
+    enum Outcome {
+        RESTORED, ABSENT, INVALID, EXPIRED, UNKNOWN_BACKEND, TIMEOUT;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    record Decoded(Outcome outcome, String backend, String sourcePod) {
+        static Decoded rejected(Outcome outcome) {
+            return new Decoded(outcome, null, null);
+        }
+    }
+}
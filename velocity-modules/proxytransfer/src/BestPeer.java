@@ -0,0 +1,114 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.plugin.PluginContainer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
+import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
+
+/**
+ * Resolves {@code @best}: the peer proxy with the most free slots among those that answer a status
+ * ping on their pinned HAProxy port (HAProxy stops answering for a draining or unready pod).
+ *
+ * <p>Per-proxy player counts come from RedisBungee when it is installed, because with its
+ * {@code handle-motd} the status ping reports the network-wide count. Without RedisBungee the
+ * ping count is used. RedisBungee proxy ids are expected to be the pod names
+ * ({@code velocity-N}). The choice is cached for {@code PROXYTRANSFER_BEST_CACHE_SECONDS}.</p>
+ */
+public final class BestPeer {
+    private static final String REDISBUNGEE_API = "com.imaginarycode.minecraft.redisbungee.RedisBungeeAPI";
+    private static final long CACHE_MILLIS =
+            Long.parseLong(ProxyDirectory.envOr("PROXYTRANSFER_BEST_CACHE_SECONDS", "5")) * 1000L;
+
+    private static volatile Cached cached;
+
+    private BestPeer() {
+    }
+
+    public static Optional<TargetSpread.Target> resolve() {
+        Cached c = cached;
+        long now = System.currentTimeMillis();
+        if (c != null && now < c.expiresAtMillis()) {
+            return Optional.ofNullable(c.target());
+        }
+        TargetSpread.Target target = choose(ProxyDirectory.fromEnv());
+        cached = new Cached(target, now + CACHE_MILLIS);
+        return Optional.ofNullable(target);
+    }
+
+    private static TargetSpread.Target choose(ProxyDirectory directory) {
+        List<Integer> ordinals = directory.peerOrdinals();
+        List<TargetSpread.Target> targets = new ArrayList<>(ordinals.size());
+        for (int ordinal : ordinals) {
+            TargetSpread.Target t = directory.targetFor(ordinal);
+            if (t == null) {
+                return null;
+            }
+            targets.add(t);
+        }
+        List<ServerPing.Players> pings = TargetSpread.pingPlayers(targets);
+        Map<Integer, Integer> redisCounts = redisBungeeCountsByOrdinal();
+
+        TargetSpread.Target best = null;
+        int bestFree = Integer.MIN_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            ServerPing.Players ping = pings.get(i);
+            Integer redisOnline = redisCounts != null ? redisCounts.get(ordinals.get(i)) : null;
+            // Unreachable, or unknown to RedisBungee (its heartbeat has lapsed): not ready.
+            if (ping == null || (redisCounts != null && redisOnline == null)) {
+                continue;
+            }
+            int online = redisOnline != null ? redisOnline : ping.getOnline();
+            int free = ping.getMax() - online;
+            if (free > bestFree) {
+                bestFree = free;
+                best = targets.get(i);
+            }
+        }
+        if (best != null) {
+            logger.info("@best resolved to {} ({} free slots, counts from {})",
+                    best.label(), bestFree, redisCounts != null ? "RedisBungee" : "status ping");
+        }
+        return best;
+    }
+
+    /**
+     * Players per proxy ordinal from RedisBungee, or null when it is not installed or the lookup
+     * fails. Reflection keeps RedisBungee an optional runtime dependency.
+     */
+    private static Map<Integer, Integer> redisBungeeCountsByOrdinal() {
+        Optional<PluginContainer> plugin = proxy.getPluginManager().getPlugin("redisbungee");
+        Optional<?> instance = plugin.isPresent() ? plugin.get().getInstance() : Optional.empty();
+        if (instance.isEmpty()) {
+            return null;
+        }
+        try {
+            ClassLoader loader = instance.get().getClass().getClassLoader();
+            Class<?> apiClass = Class.forName(REDISBUNGEE_API, true, loader);
+            Object api = apiClass.getMethod("getRedisBungeeApi").invoke(null);
+            Collection<?> proxies = (Collection<?>) apiClass.getMethod("getAllProxies").invoke(api);
+            Method playersOnProxy = apiClass.getMethod("getPlayersOnProxy", String.class);
+            Map<Integer, Integer> out = new HashMap<>();
+            for (Object id : proxies) {
+                int ordinal = ProxyDirectory.ordinalOf(id.toString());
+                if (ordinal >= 0) {
+                    out.put(ordinal, ((Collection<?>) playersOnProxy.invoke(api, id.toString())).size());
+                }
+            }
+            return out;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("RedisBungee player counts unavailable; using status ping counts", e);
+            return null;
+        }
+    }
+
+    private record Cached(TargetSpread.Target target, long expiresAtMillis) {}
+}
@@ -0,0 +1,254 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.title.Title;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
+import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
+
+/**
+ * Paced drain: releases transfers as a token bucket (players per second) capped by a max
+ * in-flight count, instead of sending everyone to the target in one tick.
+ *
+ * <p>A transfer is in flight until the player's connection to this proxy closes. The rate is
+ * adjusted AIMD-style once per second: it grows additively while transfers complete, and halves
+ * when transferred players are still connected after {@code transferTimeout} (target proxy or
+ * load balancer falling behind). Those players are re-queued once.</p>
+ *
+ * <p>Each player goes to {@link TargetSpread#pick} of their UUID, so a retry goes to the same target.
+ * Per-player outcomes and the final summary live in the engine's {@link TransferJob}.</p>
+ *
+ * <p>Each waiting player sees a countdown to their own estimated slot, so the first wave sees the
+ * requested countdown and later waves count down from further out.</p>
+ */
+public class DrainEngine {
+    private static final long TICK_MILLIS = 100;
+    private static final long CONTROL_MILLIS = 1000;
+    private static final int MAX_ATTEMPTS = 2;
+    /** Players further out than this see an estimate in minutes instead of a countdown. */
+    private static final long COUNTDOWN_HORIZON_SECONDS = 60;
+    private static final Component HEADER = Component.text("Proxy update", NamedTextColor.GOLD);
+    private static final Title.Times TITLE_TIMES = Title.Times.times(Duration.ZERO, Duration.ofMillis(1500), Duration.ofMillis(250));
+
+    private final TransferJob job;
+    private final Settings settings;
+    private final boolean paced;
+    private final Deque<Player> waiting;
+    private final Map<UUID, Long> lastShown = new HashMap<>();
+    private final Map<Long, Title> titles = new HashMap<>();
+    private final long releaseAtMillis;
+
+    private ScheduledTask task;
+    private double rate;
+    private double tokens;
+    private long lastTickMillis;
+    private long lastControlMillis;
+    private int windowCompleted;
+    private int windowTimedOut;
+
+    private DrainEngine(TransferJob job, Collection<Player> players, int countdownSeconds, Settings settings, boolean paced) {
+        this.job = job;
+        this.settings = settings;
+        this.paced = paced;
+        this.waiting = new ArrayDeque<>(players);
+        this.rate = settings.ratePerSecond();
+        long now = System.currentTimeMillis();
+        this.releaseAtMillis = now + countdownSeconds * 1000L;
+        this.lastTickMillis = now;
+        this.lastControlMillis = releaseAtMillis;
+    }
+
+    public static DrainEngine start(Collection<Player> players, TargetSpread targets, int countdownSeconds, Settings settings) {
+        return start("drain", players, targets, countdownSeconds, settings);
+    }
+
+    public static DrainEngine start(String description, Collection<Player> players, TargetSpread targets, int countdownSeconds, Settings settings) {
+        TransferJob job = new TransferJob(description, players, targets, settings.transferTimeout().toMillis(), MAX_ATTEMPTS);
+        DrainEngine engine = new DrainEngine(job, players, countdownSeconds, settings, true);
+        engine.schedule();
+        logger.info("{} to {} started for {} player(s) at {}/s, max {} in flight",
+                description, targets.describe(), job.size(), settings.ratePerSecond(), settings.maxInFlight());
+        return engine;
+    }
+
+    /**
+     * Sends every player on the first tick (no countdown, no pacing) but still tracks outcomes and
+     * retries timed-out players, for {@code /transfer all|local}.
+     */
+    public static DrainEngine immediate(String description, Collection<Player> players, TargetSpread targets, Settings settings) {
+        TransferJob job = new TransferJob(description, players, targets, settings.transferTimeout().toMillis(), MAX_ATTEMPTS);
+        DrainEngine engine = new DrainEngine(job, players, 0, settings, false);
+        engine.schedule();
+        return engine;
+    }
+
+    public TransferJob job() {
+        return job;
+    }
+
+    /**
+     * Stops releasing transfers and finishes the job as it stands; players not moved yet stay
+     * counted as pending or in flight in the summary.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+        if (!job.done().isDone()) {
+            job.finish(System.currentTimeMillis());
+        }
+    }
+
+    private void schedule() {
+        task = proxy.getScheduler().buildTask(ProxyTransfer.plugin, this::tick)
+                .repeat(Duration.ofMillis(TICK_MILLIS))
+                .schedule();
+    }
+
+    private synchronized void tick() {
+        long now = System.currentTimeMillis();
+        try {
+            TransferJob.Poll poll = job.poll(now, waiting);
+            windowCompleted += poll.completed();
+            windowTimedOut += poll.timedOut();
+            if (now >= releaseAtMillis) {
+                if (paced) {
+                    refill(now);
+                }
+                release(now);
+                if (paced && now - lastControlMillis >= CONTROL_MILLIS) {
+                    adjustRate();
+                    lastControlMillis = now;
+                }
+            }
+            if (paced) {
+                showCountdowns(now);
+            }
+            lastTickMillis = now;
+            if (job.isDone()) {
+                stop();
+            }
+        } catch (Exception e) {
+            logger.error("Drain tick failed", e);
+        }
+    }
+
+    private void refill(long now) {
+        long elapsed = now - Math.max(lastTickMillis, releaseAtMillis);
+        // Allow at most ~one tick of burst so a stalled scheduler does not release a wave at once.
+        double burst = Math.max(1.0, rate * TICK_MILLIS / 1000.0);
+        tokens = Math.min(burst, tokens + rate * Math.max(0, elapsed) / 1000.0);
+    }
+
+    private void release(long now) {
+        while (!waiting.isEmpty() && (!paced || (tokens >= 1.0 && job.inFlight() < settings.maxInFlight()))) {
+            Player player = waiting.pollFirst();
+            lastShown.remove(player.getUniqueId());
+            if (job.send(player, now) && paced) {
+                tokens -= 1.0;
+            }
+        }
+    }
+
+    private void adjustRate() {
+        if (windowTimedOut > 0) {
+            rate = Math.max(settings.minRate(), rate / 2);
+        } else if (windowCompleted > 0 && job.inFlight() < settings.maxInFlight()) {
+            rate = Math.min(settings.maxRate(), rate + settings.additiveStep());
+        }
+        windowCompleted = 0;
+        windowTimedOut = 0;
+    }
+
+    /**
+     * Pushes a countdown to waiting players whose displayed value changed since the last tick.
+     * Players with the same value share one cached {@link Title} and one {@link Audience} send.
+     */
+    private void showCountdowns(long now) {
+        long start = Math.max(now, releaseAtMillis);
+        Map<Long, List<Player>> due = null;
+        int position = 0;
+        for (Player player : waiting) {
+            long etaMillis = start - now + (long) (position * 1000.0 / rate);
+            position++;
+            if (!player.isActive()) {
+                continue;
+            }
+            long bucket = displayBucket(etaMillis);
+            Long previous = lastShown.put(player.getUniqueId(), bucket);
+            if (previous != null && previous == bucket) {
+                continue;
+            }
+            if (due == null) {
+                due = new HashMap<>();
+            }
+            due.computeIfAbsent(bucket, k -> new ArrayList<>()).add(player);
+        }
+        if (due == null) {
+            return;
+        }
+        for (Map.Entry<Long, List<Player>> e : due.entrySet()) {
+            Audience.audience(e.getValue()).showTitle(titles.computeIfAbsent(e.getKey(), DrainEngine::countdownTitle));
+        }
+    }
+
+    /** Whole seconds up to the horizon; beyond it, negative whole minutes. */
+    private static long displayBucket(long etaMillis) {
+        long seconds = Math.max(1, (etaMillis + 999) / 1000);
+        return seconds <= COUNTDOWN_HORIZON_SECONDS ? seconds : -((seconds + 59) / 60);
+    }
+
+    private static Title countdownTitle(long bucket) {
+        Component subtitle = bucket > 0
+                ? Component.text("Transferring you in " + bucket + "...", NamedTextColor.YELLOW)
+                : Component.text("Transferring you in about " + -bucket + " min", NamedTextColor.YELLOW);
+        return Title.title(HEADER, subtitle, TITLE_TIMES);
+    }
+
+    /**
+     * Drain pacing. Defaults come from {@code PROXYTRANSFER_DRAIN_*} env vars.
+     */
+    public record Settings(double ratePerSecond, int maxInFlight, double minRate, double maxRate,
+                           double additiveStep, Duration transferTimeout) {
+        public static Settings fromEnv() {
+            double rate = Double.parseDouble(envOr("PROXYTRANSFER_DRAIN_RATE", "20"));
+            return new Settings(
+                    rate,
+                    Integer.parseInt(envOr("PROXYTRANSFER_DRAIN_MAX_IN_FLIGHT", "40")),
+                    Double.parseDouble(envOr("PROXYTRANSFER_DRAIN_MIN_RATE", "2")),
+                    Double.parseDouble(envOr("PROXYTRANSFER_DRAIN_MAX_RATE", "200")),
+                    Math.max(1.0, rate / 10),
+                    Duration.ofSeconds(Long.parseLong(envOr("PROXYTRANSFER_DRAIN_TIMEOUT_SECONDS", "10"))));
+        }
+
+        public Settings withRate(double ratePerSecond) {
+            return new Settings(ratePerSecond, maxInFlight, minRate, Math.max(maxRate, ratePerSecond),
+                    Math.max(1.0, ratePerSecond / 10), transferTimeout);
+        }
+
+        /** Keeps the backoff from halving the rate below {@code floor}. */
+        public Settings withMinRate(double floor) {
+            return new Settings(ratePerSecond, maxInFlight, Math.max(minRate, floor), Math.max(maxRate, floor),
+                    additiveStep, transferTimeout);
+        }
+
+        private static String envOr(String key, String def) {
+            String v = System.getenv(key);
+            return (v == null || v.isBlank()) ? def : v.trim();
+        }
+    }
+}
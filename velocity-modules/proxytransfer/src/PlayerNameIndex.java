@@ -0,0 +1,87 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
+
+/**
+ * Case-insensitive prefix index of online usernames for command completion, kept in sync from
+ * login/disconnect events so a tab press does not walk every player on the proxy.
+ *
+ * <p>Lookups are a skip-list range scan: O(log n) to the first match, then at most {@code limit}
+ * entries.</p>
+ */
+public final class PlayerNameIndex {
+    public static final int DEFAULT_LIMIT = 50;
+
+    private static final PlayerNameIndex INSTANCE = new PlayerNameIndex();
+
+    /** Lower-cased username to entry; the entry keeps the display casing and owner. */
+    private final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+
+    public static PlayerNameIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the event listener and seeds the index with players already online (plugin reload).
+     */
+    public static void register() {
+        proxy.getEventManager().register(ProxyTransfer.plugin, INSTANCE);
+        for (Player player : proxy.getAllPlayers()) {
+            INSTANCE.add(player);
+        }
+    }
+
+    @Subscribe
+    public void onPostLogin(PostLoginEvent event) {
+        add(event.getPlayer());
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        Player player = event.getPlayer();
+        String key = player.getUsername().toLowerCase(Locale.ROOT);
+        // Only remove our own entry: a stale disconnect must not evict a newer session with the same name.
+        byName.computeIfPresent(key, (k, e) -> e.id().equals(player.getUniqueId()) ? null : e);
+    }
+
+    private void add(Player player) {
+        byName.put(player.getUsername().toLowerCase(Locale.ROOT), new Entry(player.getUsername(), player.getUniqueId()));
+    }
+
+    /**
+     * Up to {@code limit} online usernames starting with {@code prefix} (case-insensitive), in
+     * lower-case order.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        NavigableMap<String, Entry> range = from.isEmpty()
+                ? byName
+                : byName.subMap(from, true, from + Character.MAX_VALUE, false);
+        List<String> out = new ArrayList<>(Math.min(limit, 16));
+        for (Entry e : range.values()) {
+            if (out.size() >= limit) {
+                break;
+            }
+            out.add(e.username());
+        }
+        return out;
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    private record Entry(String username, UUID id) {}
+}
@@ -0,0 +1,81 @@
+package com.protoxon.proxyTransfer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The other {@code velocity-N} proxies, addressed by their pinned HAProxy ports
+ * ({@code PROXY_TARGET_HOST:PROXY_TARGET_BASE_PORT + N}), taken from the pod environment.
+ */
+public final class ProxyDirectory {
+    private final String targetHost;
+    private final int basePort;
+    private final int peerCount;
+    private final int selfOrdinal;
+
+    ProxyDirectory(String targetHost, int basePort, int peerCount, int selfOrdinal) {
+        this.targetHost = targetHost;
+        this.basePort = basePort;
+        this.peerCount = peerCount;
+        this.selfOrdinal = selfOrdinal;
+    }
+
+    public static ProxyDirectory fromEnv() {
+        String podName = envOr("POD_NAME", envOr("HOSTNAME", ""));
+        return new ProxyDirectory(
+                envOr("PROXY_TARGET_HOST", ""),
+                Integer.parseInt(envOr("PROXY_TARGET_BASE_PORT", "25578")),
+                Integer.parseInt(envOr("PROXYTRANSFER_PEER_COUNT", "3")),
+                ordinalOf(podName));
+    }
+
+    public int selfOrdinal() {
+        return selfOrdinal;
+    }
+
+    /**
+     * Pinned ports of every proxy except this one; empty when {@code PROXY_TARGET_HOST} is unset.
+     */
+    public List<TargetSpread.Target> peerTargets() {
+        List<TargetSpread.Target> out = new ArrayList<>();
+        if (targetHost.isBlank()) {
+            return out;
+        }
+        for (int ordinal : peerOrdinals()) {
+            out.add(targetFor(ordinal));
+        }
+        return out;
+    }
+
+    public List<Integer> peerOrdinals() {
+        List<Integer> out = new ArrayList<>(peerCount);
+        for (int ordinal = 0; ordinal < peerCount; ordinal++) {
+            if (ordinal != selfOrdinal) {
+                out.add(ordinal);
+            }
+        }
+        return out;
+    }
+
+    /** Pinned port target of the proxy with {@code ordinal}, or null when {@code PROXY_TARGET_HOST} is unset. */
+    public TargetSpread.Target targetFor(int ordinal) {
+        return targetHost.isBlank() ? null : new TargetSpread.Target(targetHost, basePort + ordinal, 1.0);
+    }
+
+    static int ordinalOf(String podName) {
+        int dash = podName.lastIndexOf('-');
+        if (dash < 0 || dash == podName.length() - 1) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(podName.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String envOr(String key, String def) {
+        String v = System.getenv(key);
+        return (v == null || v.isBlank()) ? def : v.trim();
+    }
+}
@@ -0,0 +1,139 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.proxy.ProxyPreShutdownEvent;
+import com.velocitypowered.api.proxy.Player;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
+import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
+
+/**
+ * Drains connected players to healthy peers when the proxy shuts down (pod SIGTERM), instead of
+ * letting shutdown disconnect them.
+ *
+ * <p>Velocity waits for {@link ProxyPreShutdownEvent} handlers before kicking players, so the
+ * handler holds shutdown until the drain finishes or the budget runs out. The budget has to fit in
+ * the pod's {@code terminationGracePeriodSeconds} minus the preStop hook. The drain rate is raised
+ * when needed so that every player is released within the first part of the budget, and timeouts
+ * do not back it off below that. The rest leaves room for retries.</p>
+ */
+public final class ShutdownDrain {
+    /** Fraction of the budget in which every player should have been released once. */
+    private static final double RELEASE_SHARE = 0.6;
+
+    private final boolean enabled;
+    private final String targetSpec;
+    private final Duration budget;
+
+    private ShutdownDrain(boolean enabled, String targetSpec, Duration budget) {
+        this.enabled = enabled;
+        this.targetSpec = targetSpec;
+        this.budget = budget;
+    }
+
+    public static void register() {
+        ShutdownDrain drain = new ShutdownDrain(
+                Boolean.parseBoolean(ProxyDirectory.envOr("PROXYTRANSFER_SHUTDOWN_DRAIN", "true")),
+                ProxyDirectory.envOr("PROXYTRANSFER_SHUTDOWN_TARGETS", "@peers"),
+                Duration.ofSeconds(Long.parseLong(ProxyDirectory.envOr("PROXYTRANSFER_SHUTDOWN_BUDGET_SECONDS", "90"))));
+        proxy.getEventManager().register(ProxyTransfer.plugin, drain);
+    }
+
+    @Subscribe
+    public EventTask onPreShutdown(ProxyPreShutdownEvent event) {
+        if (!enabled) {
+            return null;
+        }
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + budget.toMillis();
+
+        List<CompletableFuture<TransferJob>> running = new ArrayList<>();
+        for (TransferJob job : TransferJob.active()) {
+            running.add(job.done());
+        }
+        List<Player> players = new ArrayList<>();
+        for (Player player : proxy.getAllPlayers()) {
+            if (!isTracked(player)) {
+                players.add(player);
+            }
+        }
+        if (players.isEmpty() && running.isEmpty()) {
+            return null;
+        }
+
+        DrainEngine engine = null;
+        if (!players.isEmpty()) {
+            TargetSpread targets = resolveTargets();
+            if (targets == null || targets.isEmpty()) {
+                logger.error("Shutdown drain: no healthy transfer target from '{}'; {} player(s) will be disconnected",
+                        targetSpec, players.size());
+            } else {
+                DrainEngine.Settings settings = DrainEngine.Settings.fromEnv();
+                double needed = players.size() / Math.max(1.0, budget.toSeconds() * RELEASE_SHARE);
+                if (needed > settings.ratePerSecond()) {
+                    settings = settings.withRate(needed);
+                }
+                // Backing off below the required rate would leave players connected when the budget ends.
+                settings = settings.withMinRate(needed);
+                engine = DrainEngine.start("shutdown drain", players, targets, 1, settings);
+                running.add(engine.job().done());
+            }
+        }
+
+        DrainEngine started = engine;
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        CompletableFuture<Void> all = CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]))
+                .completeOnTimeout(null, remaining, TimeUnit.MILLISECONDS)
+                .thenRun(() -> report(started, startedAt));
+        return EventTask.resumeWhenComplete(all);
+    }
+
+    private TargetSpread resolveTargets() {
+        try {
+            return TargetSpread.parse(targetSpec).healthyByLoad();
+        } catch (IllegalArgumentException e) {
+            logger.error("Shutdown drain: invalid PROXYTRANSFER_SHUTDOWN_TARGETS '{}': {}", targetSpec, e.getMessage());
+            return null;
+        }
+    }
+
+    private void report(DrainEngine engine, long startedAtMillis) {
+        if (engine != null) {
+            engine.stop();
+        }
+        List<String> names = new ArrayList<>();
+        int stillConnected = 0;
+        for (Player p : proxy.getAllPlayers()) {
+            if (!p.isActive()) {
+                continue;
+            }
+            stillConnected++;
+            if (names.size() < 20) {
+                names.add(p.getUsername());
+            }
+        }
+        long seconds = (System.currentTimeMillis() - startedAtMillis) / 1000;
+        if (stillConnected == 0) {
+            logger.info("Shutdown drain complete after {}s: every player was moved", seconds);
+            return;
+        }
+        logger.warn("Shutdown drain stopped after {}s (budget {}s) with {} player(s) not moved: {}{}",
+                seconds, budget.toSeconds(), stillConnected, String.join(", ", names), stillConnected > names.size() ? ", ..." : "");
+    }
+
+    private static boolean isTracked(Player player) {
+        for (TransferJob job : TransferJob.active()) {
+            if (job.tracks(player.getUniqueId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
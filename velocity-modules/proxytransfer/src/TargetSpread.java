@@ -0,0 +1,229 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
+import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
+
+/**
+ * One or more transfer destinations with weights, and a deterministic per-player choice between them.
+ *
+ * <p>Spec syntax: comma-separated {@code host[:port][*weight]} entries and/or {@code @peers} (the
+ * pinned ports of the other proxies, see {@link ProxyDirectory}), optionally suffixed with
+ * {@code ~load} to replace the weights with each target's free slots from a status ping.
+ * Examples: {@code 10.0.0.5:25578}, {@code @peers}, {@code a:25578*2,b:25579}, {@code @peers~load}.</p>
+ *
+ * <p>Players are assigned with weighted rendezvous hashing on their UUID: the same player always
+ * lands on the same target for the same target set (so retries go to the same place), and
+ * removing a target only moves the players that were assigned to it.</p>
+ */
+public final class TargetSpread {
+    private static final int DEFAULT_PORT = 25565;
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(2);
+
+    private final List<Target> targets;
+
+    private TargetSpread(List<Target> targets) {
+        this.targets = List.copyOf(targets);
+    }
+
+    public static TargetSpread single(String host, int port) {
+        return new TargetSpread(List.of(new Target(host, port, 1.0)));
+    }
+
+    /**
+     * @throws IllegalArgumentException with a user-facing message when the spec is malformed
+     */
+    public static TargetSpread parse(String spec) {
+        boolean byLoad = spec.endsWith("~load");
+        if (byLoad) {
+            spec = spec.substring(0, spec.length() - "~load".length());
+        }
+        List<Target> out = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            if (entry.equalsIgnoreCase("@best")) {
+                out.add(BestPeer.resolve().orElseThrow(
+                        () -> new IllegalArgumentException("@best found no ready peer proxy.")));
+                continue;
+            }
+            if (entry.equalsIgnoreCase("@peers")) {
+                List<Target> peers = ProxyDirectory.fromEnv().peerTargets();
+                if (peers.isEmpty()) {
+                    throw new IllegalArgumentException("@peers needs PROXY_TARGET_HOST set on this proxy.");
+                }
+                out.addAll(peers);
+                continue;
+            }
+            out.add(parseEntry(entry));
+        }
+        if (out.isEmpty()) {
+            throw new IllegalArgumentException("No transfer target given.");
+        }
+        TargetSpread spread = new TargetSpread(out);
+        return byLoad ? spread.weightedByLoad() : spread;
+    }
+
+    private static Target parseEntry(String entry) {
+        double weight = 1.0;
+        int star = entry.indexOf('*');
+        if (star >= 0) {
+            try {
+                weight = Double.parseDouble(entry.substring(star + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in " + entry + ".");
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Invalid weight in " + entry + ".");
+            }
+            entry = entry.substring(0, star);
+        }
+        String[] hostParts = entry.split(":", 2);
+        int port = DEFAULT_PORT;
+        if (hostParts.length > 1) {
+            try {
+                port = Integer.parseInt(hostParts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid port in " + entry + ".");
+            }
+        }
+        return new Target(hostParts[0], port, weight);
+    }
+
+    public List<Target> targets() {
+        return targets;
+    }
+
+    public Target pick(UUID playerId) {
+        if (targets.size() == 1) {
+            return targets.get(0);
+        }
+        Target best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Target t : targets) {
+            if (t.weight() <= 0) {
+                continue;
+            }
+            // Weighted rendezvous: -w / ln(u) with u uniform in (0, 1) per (player, target).
+            double u = unitInterval(mix(playerId.getMostSignificantBits() ^ Long.rotateLeft(playerId.getLeastSignificantBits(), 29)
+                    ^ t.key()));
+            double score = -t.weight() / Math.log(u);
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        // All weights zero: fall back to an unweighted choice rather than refusing to transfer.
+        return best != null ? best : targets.get(Math.floorMod(mix(playerId.getLeastSignificantBits()), targets.size()));
+    }
+
+    /**
+     * Same targets with weights replaced by free slots ({@code max - online}) from a status ping.
+     * Targets that do not answer within two seconds keep their configured weight.
+     */
+    public TargetSpread weightedByLoad() {
+        return weighByPing(false);
+    }
+
+    /**
+     * Like {@link #weightedByLoad()}, but targets that do not answer are dropped. May be empty.
+     */
+    public TargetSpread healthyByLoad() {
+        return weighByPing(true);
+    }
+
+    public boolean isEmpty() {
+        return targets.isEmpty();
+    }
+
+    private TargetSpread weighByPing(boolean dropUnreachable) {
+        List<ServerPing.Players> answers = pingPlayers(targets);
+        List<Target> weighted = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            Target t = targets.get(i);
+            ServerPing.Players players = answers.get(i);
+            if (players != null) {
+                weighted.add(new Target(t.host(), t.port(), Math.max(0, players.getMax() - players.getOnline())));
+                continue;
+            }
+            if (dropUnreachable) {
+                logger.warn("Transfer target {} did not answer a status ping; skipping it", t.label());
+                continue;
+            }
+            logger.warn("Transfer target {} did not answer a status ping; keeping weight {}", t.label(), t.weight());
+            weighted.add(t);
+        }
+        return new TargetSpread(weighted);
+    }
+
+    /**
+     * Status-pings every target in parallel; the result holds each target's player counts, or null
+     * where the ping failed or did not answer within two seconds.
+     */
+    static List<ServerPing.Players> pingPlayers(List<Target> targets) {
+        List<CompletableFuture<ServerPing>> pings = new ArrayList<>(targets.size());
+        for (Target t : targets) {
+            ServerInfo info = new ServerInfo("transfer-target-" + t.label(), InetSocketAddress.createUnresolved(t.host(), t.port()));
+            RegisteredServer server = proxy.createRawRegisteredServer(info);
+            pings.add(server.ping());
+        }
+        try {
+            CompletableFuture.allOf(pings.toArray(new CompletableFuture<?>[0]))
+                    .get(PING_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Use whatever answered in time.
+        }
+        List<ServerPing.Players> out = new ArrayList<>(targets.size());
+        for (CompletableFuture<ServerPing> ping : pings) {
+            out.add(ping.isDone() && !ping.isCompletedExceptionally() ? ping.join().getPlayers().orElse(null) : null);
+        }
+        return out;
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Target t : targets) {
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(t.label());
+            if (targets.size() > 1) {
+                sb.append(" (weight ").append(Math.round(t.weight())).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double unitInterval(long h) {
+        return ((h >>> 11) + 0.5) * 0x1.0p-53;
+    }
+
+    public record Target(String host, int port, double weight) {
+        public String label() {
+            return host + ":" + port;
+        }
+
+        long key() {
+            return mix(((long) host.hashCode() << 32) ^ port);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import com.velocitypowered.api.command.BrigadierCommand;
 import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.command.CommandMeta;
@@ -11,24 +13,33 @@ import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.title.Title;
 
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
 import static com.protoxon.proxyTransfer.ProxyTransfer.proxy;
 
 public class TransferCommand {
+    private static final List<String> TARGET_SHORTCUTS = List.of("@best", "@peers", "@peers~load");
+    private static final List<String> PLAYER_SELECTORS = List.of("all", "local");
+
     public static void register() {
         CommandManager commandManager = proxy.getCommandManager();
+        PlayerNameIndex.register();
+        ShutdownDrain.register();
         LiteralArgumentBuilder<CommandSource> root = LiteralArgumentBuilder.literal("transfer");
 
         root.executes(TransferCommand::handleRootCommand);
 
+        root.then(LiteralArgumentBuilder.<CommandSource>literal("status")
+                .requires(source -> source.hasPermission("proxytransfer.others"))
+                .executes(TransferCommand::handleStatus));
         root.then(transfer());
         BrigadierCommand brigadierCommand = new BrigadierCommand(root);
         CommandMeta commandMeta = commandManager.metaBuilder("transfer")
@@ -46,35 +57,47 @@ public class TransferCommand {
         commandManager.register(drainMeta, drainCommand);
     }
 
+    /** Whether parsing {@code spec} sends status pings ({@code @best}, {@code ~load}). */
+    private static boolean pingsPeers(String spec) {
+        return spec.endsWith("~load") || spec.toLowerCase(Locale.ROOT).contains("@best");
+    }
+
     private static int handleRootCommand(CommandContext<CommandSource> context) {
         CommandSource source = context.getSource();
         source.sendMessage(Component.text("Invalid Command Usage!"));
         if(source.hasPermission("proxytransfer.others")) {
-            source.sendMessage(Component.text("/transfer <host> [player|local|all]"));
+            source.sendMessage(Component.text("/transfer <host[:port][,host:port...]|@peers|@best>[~load] [player|local|all]"));
+            source.sendMessage(Component.text("/transfer status"));
             return 0;
         }
-        source.sendMessage(Component.text("/transfer <host>"));
+        source.sendMessage(Component.text("/transfer <host[:port]>"));
         return 0;
     }
 
+    private static int handleStatus(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        List<TransferJob> active = TransferJob.active();
+        for (TransferJob job : active) {
+            source.sendMessage(Component.text(job.status(), NamedTextColor.GREEN));
+        }
+        TransferJob last = TransferJob.lastFinished();
+        if (last != null) {
+            source.sendMessage(Component.text(last.status(), NamedTextColor.GRAY));
+        } else if (active.isEmpty()) {
+            source.sendMessage(Component.text("No transfer jobs yet.", NamedTextColor.YELLOW));
+        }
+        return 1;
+    }
+
     private static int handleDrainRootCommand(CommandContext<CommandSource> context) {
         CommandSource source = context.getSource();
-        source.sendMessage(Component.text("Usage: /draintransfer <host:port> <all|local|player> [seconds]"));
+        source.sendMessage(Component.text("Usage: /draintransfer <host:port[,host:port...]|@peers|@best>[~load] <all|local|player> [seconds] [players/s]"));
         return 0;
     }
 
     public static RequiredArgumentBuilder<CommandSource, String> transfer() {
         return RequiredArgumentBuilder.<CommandSource, String>argument("target", StringArgumentType.greedyString())
-                .suggests((context, builder) -> {
-                    String input = builder.getRemaining().toLowerCase();
-                    // Show suggestions only if the user is typing the second argument
-                    if (input.contains(" ")) {
-                        builder.suggest("all");
-                        builder.suggest("local");
-                        proxy.getAllPlayers().forEach(player -> builder.suggest(player.getUsername()));
-                    }
-                    return builder.buildFuture();
-                })
+                .suggests((context, builder) -> suggestArguments(builder))
                 .executes(context -> {
                     CommandSource source = context.getSource();
 
@@ -86,48 +109,44 @@ public class TransferCommand {
                         return 0;
                     }
 
-                    String hostPort = parts[0];
-                    String[] hostParts = hostPort.split(":", 2);
-                    String host = hostParts[0];
-                    int port = 25565;
-                    if (hostParts.length > 1) {
-                        try {
-                            port = Integer.parseInt(hostParts[1]);
-                        } catch (NumberFormatException e) {
-                            source.sendMessage(Component.text("Error: Invalid port.", NamedTextColor.RED));
+                    // Handle optional second argument
+                    String playerContext = (parts.length > 1) ? parts[1] : null;
+
+                    // Check before parsing: @best and ~load ping every peer while parsing.
+                    if (!source.hasPermission("proxytransfer.others")) {
+                        if (playerContext != null) {
+                            source.sendMessage(Component.text("You don't have permission to transfer others. You must have the \"proxytransfer.others\" permission.", NamedTextColor.RED));
+                            return 0;
+                        }
+                        if (pingsPeers(parts[0])) {
+                            source.sendMessage(Component.text("You don't have permission to use @best or ~load targets. You must have the \"proxytransfer.others\" permission.", NamedTextColor.RED));
                             return 0;
                         }
                     }
 
-                    // Handle optional second argument
-                    String playerContext = (parts.length > 1) ? parts[1] : null;
+                    TargetSpread spread;
+                    try {
+                        spread = TargetSpread.parse(parts[0]);
+                    } catch (IllegalArgumentException e) {
+                        source.sendMessage(Component.text("Error: " + e.getMessage(), NamedTextColor.RED));
+                        return 0;
+                    }
 
                     if (playerContext == null) {
                         if (!(source instanceof Player executor)) {
-                            source.sendMessage(Component.text("Console usage: /transfer <host:port> all | <player>", NamedTextColor.RED));
+                            source.sendMessage(Component.text("Console usage: /transfer <host:port|@peers|@best> all | <player>", NamedTextColor.RED));
                             return 0;
                         }
-                        Transfer.transferPlayer(executor, host, port);
+                        transferTo(executor, spread);
                         return 1;
                     }
 
-                    if (!source.hasPermission("proxytransfer.others")) {
-                        source.sendMessage(Component.text("You don't have permission to transfer others. You must have the \"proxytransfer.others\" permission.", NamedTextColor.RED));
-                        return 0;
-                    }
-
                     switch (playerContext.toLowerCase()) {
                         case "all":
-                            for (Player p : proxy.getAllPlayers()) {
-                                Transfer.transferPlayer(p, host, port);
-                            }
-                            return 1;
+                            return startTracked(source, "transfer all", new ArrayList<>(proxy.getAllPlayers()), spread);
 
                         case "local":
-                            for (Player p : getPlayersOnSameServer(source)) {
-                                Transfer.transferPlayer(p, host, port);
-                            }
-                            return 1;
+                            return startTracked(source, "transfer local", new ArrayList<>(getPlayersOnSameServer(source)), spread);
 
                         default:
                             Player target = getPlayer(playerContext);
@@ -135,7 +154,7 @@ public class TransferCommand {
                                 source.sendMessage(Component.text("Player " + playerContext + " not found.", NamedTextColor.RED));
                                 return 0;
                             }
-                            Transfer.transferPlayer(target, host, port);
+                            transferTo(target, spread);
                             return 1;
                     }
                 });
@@ -143,35 +162,28 @@ public class TransferCommand {
 
     public static RequiredArgumentBuilder<CommandSource, String> drainTransfer() {
         return RequiredArgumentBuilder.<CommandSource, String>argument("target", StringArgumentType.greedyString())
-                .suggests((context, builder) -> {
-                    String input = builder.getRemaining().toLowerCase();
-                    if (input.contains(" ")) {
-                        builder.suggest("all 3");
-                        builder.suggest("local 3");
-                        proxy.getAllPlayers().forEach(player -> builder.suggest(player.getUsername() + " 3"));
-                    }
-                    return builder.buildFuture();
-                })
+                .suggests((context, builder) -> suggestArguments(builder))
                 .executes(context -> {
                     CommandSource source = context.getSource();
                     String input = StringArgumentType.getString(context, "target").trim();
                     String[] parts = input.split("\\s+");
                     if (parts.length < 2) {
-                        source.sendMessage(Component.text("Usage: /draintransfer <host:port> <all|local|player> [seconds]", NamedTextColor.RED));
+                        source.sendMessage(Component.text("Usage: /draintransfer <host:port[,host:port...]|@peers|@best>[~load] <all|local|player> [seconds] [players/s]", NamedTextColor.RED));
                         return 0;
                     }
 
-                    String hostPort = parts[0];
-                    String[] hostParts = hostPort.split(":", 2);
-                    String host = hostParts[0];
-                    int port = 25565;
-                    if (hostParts.length > 1) {
-                        try {
-                            port = Integer.parseInt(hostParts[1]);
-                        } catch (NumberFormatException e) {
-                            source.sendMessage(Component.text("Error: Invalid port.", NamedTextColor.RED));
-                            return 0;
-                        }
+                    // Check before parsing: @best and ~load ping every peer while parsing.
+                    if (!source.hasPermission("proxytransfer.others")) {
+                        source.sendMessage(Component.text("You don't have permission to transfer others. You must have the \"proxytransfer.others\" permission.", NamedTextColor.RED));
+                        return 0;
+                    }
+
+                    TargetSpread spread;
+                    try {
+                        spread = TargetSpread.parse(parts[0]);
+                    } catch (IllegalArgumentException e) {
+                        source.sendMessage(Component.text("Error: " + e.getMessage(), NamedTextColor.RED));
+                        return 0;
                     }
 
                     String playerContext = parts[1];
@@ -185,9 +197,18 @@ public class TransferCommand {
                         }
                     }
 
-                    if (!source.hasPermission("proxytransfer.others")) {
-                        source.sendMessage(Component.text("You don't have permission to transfer others. You must have the \"proxytransfer.others\" permission.", NamedTextColor.RED));
-                        return 0;
+                    DrainEngine.Settings settings = DrainEngine.Settings.fromEnv();
+                    if (parts.length > 3) {
+                        try {
+                            double rate = Double.parseDouble(parts[3]);
+                            if (rate <= 0) {
+                                throw new NumberFormatException();
+                            }
+                            settings = settings.withRate(rate);
+                        } catch (NumberFormatException e) {
+                            source.sendMessage(Component.text("Error: Invalid rate (players per second).", NamedTextColor.RED));
+                            return 0;
+                        }
                     }
 
                     Collection<Player> targets;
@@ -213,33 +234,63 @@ public class TransferCommand {
                         return 1;
                     }
 
-                    scheduleDrainTransfer(targets, host, port, countdownSeconds);
-                    source.sendMessage(Component.text("Starting drain transfer for " + targets.size() + " player(s).", NamedTextColor.GREEN));
+                    DrainEngine.start(targets, spread, countdownSeconds, settings);
+                    source.sendMessage(Component.text("Starting drain transfer for " + targets.size() + " player(s) at "
+                            + Math.round(settings.ratePerSecond()) + "/s, max " + settings.maxInFlight() + " in flight; see /transfer status.", NamedTextColor.GREEN));
                     return 1;
                 });
     }
 
-    private static void scheduleDrainTransfer(Collection<Player> players, String host, int port, int countdownSeconds) {
-        for (int remaining = countdownSeconds; remaining >= 1; remaining--) {
-            int delaySeconds = countdownSeconds - remaining;
-            int snapshotRemaining = remaining;
-            proxy.getScheduler().buildTask(ProxyTransfer.plugin, () -> {
-                for (Player player : players) {
-                    player.showTitle(Title.title(
-                            Component.text("Proxy update", NamedTextColor.GOLD),
-                            Component.text("Transferring you in " + snapshotRemaining + "...", NamedTextColor.YELLOW),
-                            Title.Times.times(Duration.ZERO, Duration.ofSeconds(1), Duration.ofMillis(250))
-                    ));
-                }
-            }).delay(Duration.ofSeconds(delaySeconds)).schedule();
+    private static int startTracked(CommandSource source, String description, Collection<Player> players, TargetSpread spread) {
+        if (players.isEmpty()) {
+            source.sendMessage(Component.text("No players to transfer.", NamedTextColor.YELLOW));
+            return 1;
         }
+        DrainEngine engine = DrainEngine.immediate(description, players, spread, DrainEngine.Settings.fromEnv());
+        source.sendMessage(Component.text("Transferring " + players.size() + " player(s); see /transfer status.", NamedTextColor.GREEN));
+        logger.info("Transfer job started: {}", engine.job().status());
+        return 1;
+    }
+
+    private static void transferTo(Player player, TargetSpread spread) {
+        TargetSpread.Target target = spread.pick(player.getUniqueId());
+        Transfer.transferPlayer(player, target.host(), target.port());
+    }
 
-        proxy.getScheduler().buildTask(ProxyTransfer.plugin, () -> {
-            for (Player player : players) {
-                Transfer.transferPlayer(player, host, port);
+    /**
+     * Suggests target shortcuts while the first word is typed, then {@code all}, {@code local} and
+     * online names matching the typed prefix for the second word. Names are suggested as stored,
+     * so completion does not build a string per suggestion.
+     */
+    private static CompletableFuture<Suggestions> suggestArguments(SuggestionsBuilder builder) {
+        String input = builder.getRemaining();
+        int space = input.indexOf(' ');
+        if (space < 0) {
+            String typed = input.toLowerCase(Locale.ROOT);
+            for (String shortcut : TARGET_SHORTCUTS) {
+                if (shortcut.startsWith(typed)) {
+                    builder.suggest(shortcut);
+                }
+            }
+            return builder.buildFuture();
+        }
+        String typed = input.substring(space + 1);
+        if (typed.indexOf(' ') >= 0) {
+            return builder.buildFuture();
+        }
+        SuggestionsBuilder player = builder.createOffset(builder.getStart() + space + 1);
+        String lower = typed.toLowerCase(Locale.ROOT);
+        for (String selector : PLAYER_SELECTORS) {
+            if (selector.startsWith(lower)) {
+                player.suggest(selector);
             }
-        }).delay(Duration.ofSeconds(countdownSeconds)).schedule();
+        }
+        for (String name : PlayerNameIndex.get().complete(typed, PlayerNameIndex.DEFAULT_LIMIT)) {
+            player.suggest(name);
+        }
+        return player.buildFuture();
     }
+
     public static Player getPlayer(String username) {
         Optional<Player> player = proxy.getPlayer(username);
         return player.orElse(null);
@@ -0,0 +1,237 @@
+package com.protoxon.proxyTransfer;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.protoxon.proxyTransfer.ProxyTransfer.logger;
+
+/**
+ * Outcome tracking for one bulk transfer: per-player state, bounded retries, and a summary with
+ * throughput and latency percentiles once every player has left or given up.
+ *
+ * <p>A player is {@code SENT} from the moment the transfer packet goes out until their connection
+ * to this proxy closes ({@code DISCONNECTED}, latency recorded). Players still connected after the
+ * timeout go back to {@code PENDING} for another attempt, up to {@code maxAttempts}, then
+ * {@code FAILED}. Players who quit before being sent are also {@code FAILED}.</p>
+ *
+ * <p>Driven from the owning {@link DrainEngine}'s tick; methods are synchronized so
+ * {@code /transfer status} can read a live job.</p>
+ */
+public final class TransferJob {
+    public enum State { PENDING, SENT, DISCONNECTED, FAILED }
+
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private static final List<TransferJob> ACTIVE = new CopyOnWriteArrayList<>();
+    private static volatile TransferJob lastFinished;
+
+    private final int id = IDS.incrementAndGet();
+    private final String description;
+    private final TargetSpread targets;
+    private final long timeoutMillis;
+    private final int maxAttempts;
+    private final Map<UUID, Tracked> players;
+    private final Map<UUID, Tracked> sent = new HashMap<>();
+    private final int[] counts = new int[State.values().length];
+    private long[] latencies;
+    private int latencyCount;
+    private int retries;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private long firstSentMillis;
+    private long lastDoneMillis;
+    private long finishedAtMillis;
+    private final CompletableFuture<TransferJob> done = new CompletableFuture<>();
+
+    TransferJob(String description, Collection<Player> players, TargetSpread targets, long timeoutMillis, int maxAttempts) {
+        this.description = description;
+        this.targets = targets;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.players = new LinkedHashMap<>(players.size() * 4 / 3 + 1);
+        for (Player p : players) {
+            this.players.putIfAbsent(p.getUniqueId(), new Tracked(p));
+        }
+        this.counts[State.PENDING.ordinal()] = this.players.size();
+        this.latencies = new long[Math.max(16, this.players.size())];
+        ACTIVE.add(this);
+    }
+
+    public static List<TransferJob> active() {
+        return List.copyOf(ACTIVE);
+    }
+
+    public static TransferJob lastFinished() {
+        return lastFinished;
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    public boolean tracks(UUID playerId) {
+        return players.containsKey(playerId);
+    }
+
+    /** Completes with this job when it finishes (all players resolved, or stopped). */
+    public CompletableFuture<TransferJob> done() {
+        return done;
+    }
+
+    public synchronized int count(State state) {
+        return counts[state.ordinal()];
+    }
+
+    /**
+     * Sends one pending player to their target. Returns false (and marks them failed) when they
+     * already left on their own.
+     */
+    synchronized boolean send(Player player, long now) {
+        Tracked t = players.get(player.getUniqueId());
+        if (t == null || t.state != State.PENDING) {
+            return false;
+        }
+        if (!player.isActive()) {
+            move(t, State.FAILED);
+            return false;
+        }
+        t.target = targets.pick(player.getUniqueId());
+        t.attempts++;
+        if (t.attempts > 1) {
+            retries++;
+        }
+        t.sentAtMillis = now;
+        if (firstSentMillis == 0) {
+            firstSentMillis = now;
+        }
+        move(t, State.SENT);
+        sent.put(player.getUniqueId(), t);
+        Transfer.transferPlayer(player, t.target.host(), t.target.port());
+        return true;
+    }
+
+    /**
+     * Advances every sent player: disconnected ones complete, timed-out ones are re-queued (appended
+     * to {@code requeue}) or failed.
+     */
+    synchronized Poll poll(long now, Deque<Player> requeue) {
+        int completed = 0;
+        int timedOut = 0;
+        Iterator<Tracked> it = sent.values().iterator();
+        while (it.hasNext()) {
+            Tracked t = it.next();
+            if (!t.player.isActive()) {
+                it.remove();
+                move(t, State.DISCONNECTED);
+                recordLatency(now - t.sentAtMillis);
+                lastDoneMillis = now;
+                completed++;
+            } else if (now - t.sentAtMillis >= timeoutMillis) {
+                it.remove();
+                timedOut++;
+                if (t.attempts < maxAttempts) {
+                    move(t, State.PENDING);
+                    requeue.addLast(t.player);
+                } else {
+                    move(t, State.FAILED);
+                    logger.warn("Transfer of {} to {} did not complete after {} attempts",
+                            t.player.getUsername(), t.target.label(), t.attempts);
+                }
+            }
+        }
+        return new Poll(completed, timedOut);
+    }
+
+    synchronized int inFlight() {
+        return sent.size();
+    }
+
+    synchronized boolean isDone() {
+        return counts[State.PENDING.ordinal()] == 0 && counts[State.SENT.ordinal()] == 0;
+    }
+
+    synchronized void finish(long now) {
+        finishedAtMillis = now;
+        ACTIVE.remove(this);
+        lastFinished = this;
+        logger.info(summary());
+        done.complete(this);
+    }
+
+    /** One-line state for {@code /transfer status}. */
+    public synchronized String status() {
+        return summary();
+    }
+
+    private String summary() {
+        long end = finishedAtMillis != 0 ? finishedAtMillis : System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Transfer job #").append(id).append(" (").append(description).append(" to ").append(targets.describe()).append(") ")
+                .append(finishedAtMillis != 0 ? "finished in " : "running for ")
+                .append(formatSeconds(end - startedAtMillis)).append(": ")
+                .append(players.size()).append(" players, ")
+                .append(count(State.DISCONNECTED)).append(" transferred, ")
+                .append(count(State.FAILED)).append(" failed, ")
+                .append(count(State.SENT)).append(" in flight, ")
+                .append(count(State.PENDING)).append(" pending, ")
+                .append(retries).append(" retries");
+        if (latencyCount > 0) {
+            long span = Math.max(1, lastDoneMillis - firstSentMillis);
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            sb.append("; ").append(String.format("%.1f", latencyCount * 1000.0 / span)).append(" players/s")
+                    .append(", latency p50 ").append(percentile(sorted, 50))
+                    .append("ms p90 ").append(percentile(sorted, 90))
+                    .append("ms p99 ").append(percentile(sorted, 99))
+                    .append("ms max ").append(sorted[sorted.length - 1]).append("ms");
+        }
+        return sb.toString();
+    }
+
+    private void move(Tracked t, State to) {
+        counts[t.state.ordinal()]--;
+        counts[to.ordinal()]++;
+        t.state = to;
+    }
+
+    private void recordLatency(long millis) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        }
+        latencies[latencyCount++] = millis;
+    }
+
+    /** Nearest-rank percentile of an ascending array. */
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static String formatSeconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0);
+    }
+
+    record Poll(int completed, int timedOut) {}
+
+    private static final class Tracked {
+        final Player player;
+        State state = State.PENDING;
+        TargetSpread.Target target;
+        int attempts;
+        long sentAtMillis;
+
+        Tracked(Player player) {
+            this.player = player;
+        }
+    }
+}